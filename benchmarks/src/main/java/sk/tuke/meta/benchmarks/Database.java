@@ -0,0 +1,131 @@
+package sk.tuke.meta.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import sk.tuke.meta.persistence.DAOPersistenceManager;
+import sk.tuke.meta.persistence.EntityCache;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.IdentityMap;
+import sk.tuke.meta.persistence.PersistenceManager;
+import sk.tuke.meta.persistence.ProxyManager;
+import sk.tuke.meta.persistence.ReflectivePersistenceManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Database filled with departments, employees and contractors, accessed by the manager under test.
+ */
+@State(Scope.Benchmark)
+public class Database {
+    public enum Implementation {
+        GENERATED,
+        REFLECTIVE
+    }
+
+    public enum Storage {
+        MEMORY,
+        FILE
+    }
+
+    private static final int EMPLOYEES_PER_DEPARTMENT = 10;
+
+    @Param({"GENERATED", "REFLECTIVE"})
+    public Implementation implementation;
+
+    @Param({"MEMORY", "FILE"})
+    public Storage storage;
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    public PersistenceManager manager;
+    public List<Department> departments;
+    public List<Employee> employees;
+    public List<Contractor> contractors;
+
+    private Connection connection;
+    private Path file;
+    private IdentityMap identityMap;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (storage == Storage.FILE) {
+            file = Files.createTempFile("persistence-benchmark", ".db");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        } else {
+            connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        }
+
+        // Tables are created from the generated DDL, which the reflective manager shares
+        try (GeneratedPersistenceManager ddl = new GeneratedPersistenceManager(connection)) {
+            ddl.createTables();
+        }
+
+        if (implementation == Implementation.GENERATED) {
+            GeneratedPersistenceManager generated = new GeneratedPersistenceManager(connection);
+            identityMap = generated.getIdentityMap();
+            manager = generated;
+        } else {
+            ReflectivePersistenceManager reflective = new ReflectivePersistenceManager(connection);
+            identityMap = reflective.getIdentityMap();
+            manager = reflective;
+        }
+
+        departments = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, rows / EMPLOYEES_PER_DEPARTMENT); i++) {
+            departments.add(new Department("Department " + i, "D" + i));
+        }
+        employees = new ArrayList<>();
+        contractors = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Department department = departments.get(i % departments.size());
+            employees.add(new Employee("Surname " + i, "Name " + i, 20 + i % 50, department));
+            contractors.add(new Contractor("Surname " + i, "Name " + i, 20 + i % 50, department));
+        }
+        manager.saveAll(departments);
+        manager.saveAll(employees);
+        manager.saveAll(contractors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        manager.close();
+        connection.close();
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Forget loaded entities, so reads hit the database instead of the identity map.
+     */
+    public void forget() {
+        identityMap.clear();
+        EntityCache.clearAll();
+    }
+
+    public <T> T random(List<T> entities) {
+        return entities.get(ThreadLocalRandom.current().nextInt(entities.size()));
+    }
+
+    /**
+     * Create a lazy reference the way the manager does when loading a lazy <code>@ManyToOne</code> field.
+     */
+    public Department createProxy(long id) throws Exception {
+        if (manager instanceof DAOPersistenceManager generated) {
+            return generated.createProxy(Department.class, id);
+        }
+        return ProxyManager.createProxy((type, key) -> manager.getBy(type, "pk", key).stream().findFirst().orElse(null),
+                identityMap, Department.class, id);
+    }
+}
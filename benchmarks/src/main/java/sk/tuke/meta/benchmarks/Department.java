@@ -0,0 +1,50 @@
+package sk.tuke.meta.benchmarks;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Department referenced by employees and contractors.
+ */
+@Entity
+public class Department {
+    @Id
+    private long pk;
+    private String name;
+
+    @Column(nullable = false, unique = true)
+    private String code;
+
+    public Department() {
+    }
+
+    public Department(String name, String code) {
+        this.name = name;
+        this.code = code;
+    }
+
+    public long getPk() {
+        return pk;
+    }
+
+    public void setPk(long pk) {
+        this.pk = pk;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+}
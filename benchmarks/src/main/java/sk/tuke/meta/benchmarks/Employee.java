@@ -0,0 +1,71 @@
+package sk.tuke.meta.benchmarks;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+/**
+ * Employee with an eagerly loaded department.
+ */
+@Entity
+public class Employee {
+    @Id
+    private long id;
+    private String surname;
+    private String name;
+    private int age;
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    private Department department;
+
+    public Employee() {
+    }
+
+    public Employee(String surname, String name, int age, Department department) {
+        this.surname = surname;
+        this.name = name;
+        this.age = age;
+        this.department = department;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
+    public void setSurname(String surname) {
+        this.surname = surname;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public Department getDepartment() {
+        return department;
+    }
+
+    public void setDepartment(Department department) {
+        this.department = department;
+    }
+}
@@ -0,0 +1,83 @@
+package sk.tuke.meta.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads through the manager under test. Loaded entities are forgotten before every operation,
+ * so each one queries the database and hydrates the rows again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+    @Benchmark
+    public Optional<Department> getById(Database database) throws Exception {
+        database.forget();
+        return database.manager.get(Department.class, database.random(database.departments).getPk());
+    }
+
+    @Benchmark
+    public List<Contractor> getAll(Database database) {
+        database.forget();
+        return database.manager.getAll(Contractor.class);
+    }
+
+    @Benchmark
+    public List<Contractor> getByReference(Database database) {
+        database.forget();
+        return database.manager.getBy(Contractor.class, "department", database.random(database.departments).getPk());
+    }
+
+    @Benchmark
+    public List<Contractor> getByValue(Database database) {
+        database.forget();
+        return database.manager.getBy(Contractor.class, "age", database.random(database.contractors).getAge());
+    }
+
+    /**
+     * Load an employee together with its department.
+     */
+    @Benchmark
+    public String eagerReference(Database database) throws Exception {
+        database.forget();
+        return database.manager.get(Employee.class, database.random(database.employees).getId())
+                .orElseThrow().getDepartment().getName();
+    }
+
+    /**
+     * Load a contractor and then its department through the lazy reference.
+     */
+    @Benchmark
+    public String lazyReference(Database database) throws Exception {
+        database.forget();
+        return database.manager.get(Contractor.class, database.random(database.contractors).getId())
+                .orElseThrow().getDepartment().getName();
+    }
+
+    /**
+     * Load all employees with their departments.
+     */
+    @Benchmark
+    public List<Employee> getAllEager(Database database) {
+        database.forget();
+        return database.manager.getAll(Employee.class);
+    }
+
+    @Benchmark
+    public Department createProxy(Database database) throws Exception {
+        database.forget();
+        return database.createProxy(database.random(database.departments).getPk());
+    }
+}
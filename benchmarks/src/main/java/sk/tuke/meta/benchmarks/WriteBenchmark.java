@@ -0,0 +1,48 @@
+package sk.tuke.meta.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes through the manager under test, each in its own implicit transaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    @Benchmark
+    public long insert(Database database) {
+        Employee employee = new Employee("Surname", "Name", 30, database.random(database.departments));
+        return database.manager.save(employee);
+    }
+
+    /**
+     * Change one column of a loaded employee and save it.
+     */
+    @Benchmark
+    public long update(Database database) {
+        Employee employee = database.random(database.employees);
+        employee.setAge(employee.getAge() + 1);
+        return database.manager.save(employee);
+    }
+
+    /**
+     * Insert an employee and delete it again, keeping the table size constant.
+     */
+    @Benchmark
+    public long insertAndDelete(Database database) {
+        Employee employee = new Employee("Surname", "Name", 30, database.random(database.departments));
+        long id = database.manager.save(employee);
+        database.manager.delete(employee);
+        return id;
+    }
+}
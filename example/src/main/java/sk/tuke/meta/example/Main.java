@@ -37,6 +37,12 @@ public class Main {
             System.out.println("  " + person.getDepartment());
         }
 
+        manager.save(new Project("Persistence", development));
+        for (Project project : manager.getAll(Project.class)) {
+            System.out.println(project);
+        }
+
+        manager.close();
         conn.close();
     }
 
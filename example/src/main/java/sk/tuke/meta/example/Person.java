@@ -1,9 +1,12 @@
 package sk.tuke.meta.example;
 
+import sk.tuke.meta.persistence.Index;
+
 import javax.persistence.*;
 
 @Entity
 @Table(name = "PersonTable")
+@Index(columnList = "surname, personName")
 public class Person {
     @Id
     @Column(name = "primaryKey")
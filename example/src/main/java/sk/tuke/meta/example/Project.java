@@ -0,0 +1,12 @@
+package sk.tuke.meta.example;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+@Entity
+public record Project(@Id long id, String name, @ManyToOne Department department) {
+    public Project(String name, Department department) {
+        this(0, name, department);
+    }
+}
@@ -0,0 +1,104 @@
+package sk.tuke.meta.example;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class Timesheet {
+    @Id
+    private long id;
+    private String task;
+    private int hours;
+    private double rate;
+    private boolean billable;
+    private Integer overtime;
+    private Long budget;
+    private Double bonus;
+    private Boolean approved;
+
+    public Timesheet() {
+    }
+
+    public Timesheet(String task, int hours, double rate, boolean billable) {
+        this.task = task;
+        this.hours = hours;
+        this.rate = rate;
+        this.billable = billable;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    public void setTask(String task) {
+        this.task = task;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+
+    public void setHours(int hours) {
+        this.hours = hours;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public boolean isBillable() {
+        return billable;
+    }
+
+    public void setBillable(boolean billable) {
+        this.billable = billable;
+    }
+
+    public Integer getOvertime() {
+        return overtime;
+    }
+
+    public void setOvertime(Integer overtime) {
+        this.overtime = overtime;
+    }
+
+    public Long getBudget() {
+        return budget;
+    }
+
+    public void setBudget(Long budget) {
+        this.budget = budget;
+    }
+
+    public Double getBonus() {
+        return bonus;
+    }
+
+    public void setBonus(Double bonus) {
+        this.bonus = bonus;
+    }
+
+    public Boolean getApproved() {
+        return approved;
+    }
+
+    public void setApproved(Boolean approved) {
+        this.approved = approved;
+    }
+
+    public String toString() {
+        return String.format("Timesheet %d: %s, %d h", id, task, hours);
+    }
+}
@@ -0,0 +1,133 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.AsyncPersistenceManager;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.PersistenceListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncPersistenceManagerTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private ExecutorService executor;
+    private AsyncPersistenceManager async;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        executor = Executors.newFixedThreadPool(4);
+        async = new AsyncPersistenceManager(manager, executor, 1);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        async.close();
+        executor.shutdownNow();
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void operationsCompleteTheirFutures() throws Exception {
+        Department department = new Department("Development", "DVLP");
+        long id = async.save(department).get(5, TimeUnit.SECONDS);
+
+        assertEquals(department.getPk(), id);
+        assertSame(department, async.get(Department.class, id).get(5, TimeUnit.SECONDS).orElseThrow());
+        assertEquals(1, async.getAll(Department.class).get(5, TimeUnit.SECONDS).size());
+
+        async.delete(department).get(5, TimeUnit.SECONDS);
+        assertTrue(async.get(Department.class, id).get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void failuresCompleteFuturesExceptionally() {
+        CompletableFuture<Long> future = async.save(new Department("Development", null));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertNotNull(exception.getCause());
+    }
+
+    @Test
+    void operationsBeyondConcurrencyWait() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        manager.setListener(new PersistenceListener() {
+            @Override
+            public void statementCompleted(String sql, long nanos) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        CompletableFuture<Long> first = async.save(new Department("Development", "DVLP"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Long> second = async.save(new Department("Testing", "TEST"));
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertNotEquals(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void publisherDeliversRowsOnRequest() throws Exception {
+        List<Department> departments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            departments.add(new Department("D" + i, "C" + i));
+        }
+        manager.saveAll(departments);
+
+        List<String> names = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        async.streamAll(Department.class).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Department item) {
+                names.add(item.getName());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(departments.stream().map(Department::getName).toList(), names);
+    }
+}
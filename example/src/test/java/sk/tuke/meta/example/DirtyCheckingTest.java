@@ -0,0 +1,78 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyCheckingTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long totalChanges() throws SQLException {
+        return ExampleDatabase.queryLong(connection, "SELECT total_changes()");
+    }
+
+    @Test
+    void savingUnchangedEntityWritesNothing() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        manager.save(department);
+
+        long changes = totalChanges();
+        manager.save(department);
+        manager.saveAll(List.of(department));
+        assertEquals(changes, totalChanges());
+    }
+
+    @Test
+    void savingLoadedEntityWritesNothing() throws Exception {
+        long id = manager.save(new Department("Development", "DVLP"));
+        try (GeneratedPersistenceManager other = new GeneratedPersistenceManager(connection)) {
+            Department loaded = other.get(Department.class, id).orElseThrow();
+
+            long changes = totalChanges();
+            other.save(loaded);
+            other.saveAll(other.getAll(Department.class));
+            assertEquals(changes, totalChanges());
+        }
+    }
+
+    @Test
+    void onlyChangedColumnIsUpdated() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        long id = manager.save(department);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE 'Department' SET name = 'Changed elsewhere' WHERE pk = " + id);
+        }
+
+        department.setCode("DEV");
+        manager.save(department);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name, code FROM 'Department' WHERE pk = " + id)) {
+            assertEquals("Changed elsewhere", resultSet.getString(1));
+            assertEquals("DEV", resultSet.getString(2));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.EntityQuery;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityQueryTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private Department development;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+
+        development = new Department("Development", "DVLP");
+        manager.save(development);
+        for (int i = 0; i < 6; i++) {
+            Person person = new Person("Surname" + i, "Name" + i, 20 + i);
+            if (i % 2 == 0) {
+                person.setDepartment(development);
+            }
+            manager.save(person);
+        }
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private static List<Integer> ages(List<Person> persons) {
+        return persons.stream().map(Person::getAge).toList();
+    }
+
+    @Test
+    void conditionsOrdersAndPaging() {
+        List<Person> persons = new PersonQuery(manager)
+                .where(PersonQuery.AGE.ge(21), PersonQuery.AGE.lt(25))
+                .orderBy(PersonQuery.AGE.desc())
+                .limit(2).offset(1)
+                .list();
+
+        assertEquals(List.of(23, 22), ages(persons));
+    }
+
+    @Test
+    void inMatchesListedValuesOnly() {
+        List<Person> persons = new PersonQuery(manager)
+                .where(PersonQuery.AGE.in(List.of(20, 22, 25)))
+                .orderBy(PersonQuery.AGE.asc())
+                .list();
+
+        assertEquals(List.of(20, 22, 25), ages(persons));
+        assertTrue(new PersonQuery(manager).where(PersonQuery.AGE.in(List.of())).list().isEmpty());
+    }
+
+    @Test
+    void queriesOfSameShapeShareSql() {
+        PersonQuery three = new PersonQuery(manager);
+        three.where(PersonQuery.AGE.in(List.of(20, 21, 22)));
+        PersonQuery four = new PersonQuery(manager);
+        four.where(PersonQuery.AGE.in(List.of(23, 24, 25, 26)));
+
+        assertEquals(three.getClause(), four.getClause());
+    }
+
+    @Test
+    void referencesAreComparedById() {
+        List<Person> persons = new PersonQuery(manager)
+                .where(PersonQuery.DEPARTMENT.eq(development.getPk()))
+                .list();
+        assertEquals(List.of(20, 22, 24), ages(persons));
+
+        assertEquals(3, new PersonQuery(manager).where(PersonQuery.DEPARTMENT.eq(null)).list().size());
+    }
+
+    @Test
+    void firstAndStream() {
+        EntityQuery<Person> query = new PersonQuery(manager).orderBy(PersonQuery.NAME.desc());
+        assertEquals("Name5", query.first().orElseThrow().getName());
+
+        try (Stream<Person> stream = new PersonQuery(manager).where(PersonQuery.SURNAME.like("Surname%")).stream()) {
+            assertEquals(6, stream.count());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package sk.tuke.meta.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SQLite databases for the generated persistence manager of the example entities.
+ */
+final class ExampleDatabase {
+    private ExampleDatabase() {
+    }
+
+    /**
+     * @return connection to an empty in-memory database, create its tables by the manager
+     */
+    static Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.GroupCommitWriter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitWriterTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private GroupCommitWriter writer;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        writer = new GroupCommitWriter(manager, 16, 20, GroupCommitWriter.Durability.OFF);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        writer.close();
+        manager.close();
+        connection.close();
+    }
+
+    private long count() throws SQLException {
+        return ExampleDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Department'");
+    }
+
+    @Test
+    void queuedWritesAreCommitted() throws Exception {
+        List<Department> departments = new ArrayList<>();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Department department = new Department("D" + i, "C" + i);
+            departments.add(department);
+            futures.add(writer.save(department));
+        }
+        writer.flush().get(5, TimeUnit.SECONDS);
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < departments.size(); i++) {
+            long id = futures.get(i).get();
+            assertEquals(departments.get(i).getPk(), id);
+            assertTrue(ids.add(id));
+        }
+        assertEquals(40, count());
+        assertEquals(0, ExampleDatabase.queryLong(connection, "PRAGMA synchronous"));
+    }
+
+    @Test
+    void failingWriteDoesNotFailItsBatch() throws Exception {
+        Department first = new Department("First", "ONE");
+        Department duplicate = new Department("Duplicate", "ONE");
+        Department last = new Department("Last", "TWO");
+        CompletableFuture<Long> firstSaved = writer.save(first);
+        CompletableFuture<Long> duplicateSaved = writer.save(duplicate);
+        CompletableFuture<Long> lastSaved = writer.save(last);
+        writer.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(first.getPk(), firstSaved.get());
+        assertEquals(last.getPk(), lastSaved.get());
+        assertThrows(ExecutionException.class, duplicateSaved::get);
+        assertEquals(0, duplicate.getPk());
+        assertEquals(2, count());
+    }
+
+    @Test
+    void deletesAreCommitted() throws Exception {
+        Department department = new Department("Development", "DVLP");
+        writer.save(department).get(5, TimeUnit.SECONDS);
+        writer.delete(department).get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, count());
+    }
+
+    @Test
+    void closeCommitsQueuedWritesAndRejectsNewOnes() throws Exception {
+        CompletableFuture<Long> queued = writer.save(new Department("Development", "DVLP"));
+        writer.close();
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS) > 0);
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> writer.save(new Department("Testing", "TEST")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(1, count());
+    }
+}
@@ -0,0 +1,104 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HydrationTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private Timesheet reload(Timesheet timesheet) throws Exception {
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            Timesheet loaded = reader.get(Timesheet.class, timesheet.getId()).orElseThrow();
+            assertNotSame(timesheet, loaded);
+            return loaded;
+        }
+    }
+
+    @Test
+    void valuesOfAllFieldTypesAreRead() throws Exception {
+        Timesheet timesheet = new Timesheet("Review", 6, 42.5, true);
+        timesheet.setOvertime(2);
+        timesheet.setBudget(10_000_000_000L);
+        timesheet.setBonus(0.25);
+        timesheet.setApproved(false);
+        manager.save(timesheet);
+
+        Timesheet loaded = reload(timesheet);
+        assertEquals("Review", loaded.getTask());
+        assertEquals(6, loaded.getHours());
+        assertEquals(42.5, loaded.getRate());
+        assertTrue(loaded.isBillable());
+        assertEquals(2, loaded.getOvertime());
+        assertEquals(10_000_000_000L, loaded.getBudget());
+        assertEquals(0.25, loaded.getBonus());
+        assertEquals(false, loaded.getApproved());
+    }
+
+    @Test
+    void smallValuesOfWideBoxedTypesAreRead() throws Exception {
+        Timesheet timesheet = new Timesheet("Review", 1, 1, false);
+        timesheet.setBudget(5L);
+        timesheet.setBonus(3.0);
+        timesheet.setApproved(true);
+        manager.save(timesheet);
+
+        Timesheet loaded = reload(timesheet);
+        assertEquals(5L, loaded.getBudget());
+        assertEquals(3.0, loaded.getBonus());
+        assertEquals(true, loaded.getApproved());
+    }
+
+    @Test
+    void nullColumnsKeepNullInBoxedFields() throws Exception {
+        Timesheet timesheet = new Timesheet(null, 0, 0, false);
+        manager.save(timesheet);
+
+        Timesheet loaded = reload(timesheet);
+        assertNull(loaded.getTask());
+        assertNull(loaded.getOvertime());
+        assertNull(loaded.getBudget());
+        assertNull(loaded.getBonus());
+        assertNull(loaded.getApproved());
+    }
+
+    @Test
+    void listsAndStreamsHydrateLikeGet() throws Exception {
+        Timesheet first = new Timesheet("First", 1, 10, true);
+        first.setOvertime(3);
+        Timesheet second = new Timesheet("Second", 2, 20, false);
+        manager.saveAll(List.of(first, second));
+
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            List<Timesheet> all = reader.getAll(Timesheet.class);
+            assertEquals(List.of(3, 0), all.stream().map(t -> t.getOvertime() == null ? 0 : t.getOvertime()).toList());
+            assertEquals(List.of(10.0, 20.0), all.stream().map(Timesheet::getRate).toList());
+
+            try (Stream<Timesheet> stream = reader.streamBy(Timesheet.class, "billable", false)) {
+                assertEquals(List.of("Second"), stream.map(Timesheet::getTask).toList());
+            }
+        }
+    }
+}
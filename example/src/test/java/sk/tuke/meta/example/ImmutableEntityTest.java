@@ -0,0 +1,88 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImmutableEntityTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private Department development;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        development = new Department("Development", "DVLP");
+        manager.save(development);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long count() throws SQLException {
+        return ExampleDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Project'");
+    }
+
+    @Test
+    void recordsAreCreatedByCanonicalConstructor() throws Exception {
+        long id = manager.save(new Project("Compiler", development));
+        long withoutDepartment = manager.save(new Project("Website", null));
+
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            Project loaded = reader.get(Project.class, id).orElseThrow();
+            assertEquals(new Project(id, "Compiler", loaded.department()), loaded);
+            assertEquals("Development", loaded.department().getName());
+            assertSame(loaded, reader.get(Project.class, id).orElseThrow());
+            assertNull(reader.get(Project.class, withoutDepartment).orElseThrow().department());
+
+            List<Project> all = reader.getAll(Project.class);
+            assertSame(loaded, all.get(0));
+            assertNull(all.get(1).department());
+        }
+    }
+
+    @Test
+    void insertedRecordKeepsItsRow() throws SQLException {
+        Project project = new Project("Compiler", development);
+        long id = manager.save(project);
+        assertEquals(0, project.id());
+        assertEquals(id, manager.getIdentityMap().getInsertedId(project));
+        assertThrows(PersistenceException.class, () -> manager.save(project));
+        assertEquals(1, count());
+
+        manager.delete(project);
+        assertEquals(0, count());
+    }
+
+    @Test
+    void recordWithIdReplacesItsRow() throws Exception {
+        long id = manager.save(new Project("Compiler", development));
+        manager.save(new Project(id, "Renamed", development));
+
+        assertEquals(1, count());
+        assertEquals("Renamed", manager.get(Project.class, id).orElseThrow().name());
+    }
+
+    @Test
+    void savedAllRecordsAreInsertedAndDeleted() throws SQLException {
+        List<Project> projects = List.of(new Project("Compiler", development), new Project("Compiler", development));
+        manager.saveAll(projects);
+
+        assertEquals(2, count());
+        manager.deleteAll(projects);
+        assertEquals(0, count());
+    }
+}
@@ -0,0 +1,74 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private List<String> query(String sql, String column) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString(column));
+            }
+        }
+        return rows;
+    }
+
+    private String plan(String sql) throws SQLException {
+        return String.join(" ", query("EXPLAIN QUERY PLAN " + sql, "detail"));
+    }
+
+    private List<String> indexes(String table) throws SQLException {
+        return query("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL AND tbl_name = '"
+                + table + "' ORDER BY name", "name");
+    }
+
+    @Test
+    void declaredAndReferenceIndexesAreCreated() throws SQLException {
+        assertEquals(List.of("idx_PersonTable_department", "idx_PersonTable_surname_personName"), indexes("PersonTable"));
+        assertEquals(List.of("idx_Project_department"), indexes("Project"));
+        assertEquals(List.of(), indexes("Department"));
+    }
+
+    @Test
+    void indexesAreCreatedOnce() throws SQLException {
+        manager.createTables();
+        assertEquals(2, indexes("PersonTable").size());
+    }
+
+    @Test
+    void queriesUseIndexes() throws SQLException {
+        String byName = plan("SELECT * FROM 'PersonTable' WHERE surname = 'Hrasko'");
+        assertTrue(byName.contains("idx_PersonTable_surname_personName"), byName);
+
+        String byDepartment = plan("SELECT * FROM 'PersonTable' WHERE department = 1");
+        assertTrue(byDepartment.contains("idx_PersonTable_department"), byDepartment);
+    }
+}
@@ -0,0 +1,83 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.Page;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationTest {
+    private static final String[] SURNAMES = {"B", "A", null, "B", "C", "A", null, "B"};
+
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private List<Person> persons;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        persons = new ArrayList<>();
+        for (int i = 0; i < SURNAMES.length; i++) {
+            persons.add(new Person(SURNAMES[i], "Name" + i, 20 + i));
+        }
+        manager.saveAll(persons);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private List<Long> walk(String column, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Person> page = manager.page(Person.class, column, token, limit);
+            assertTrue(page.getItems().size() <= limit);
+            page.getItems().forEach(person -> ids.add(person.getId()));
+            token = page.getContinuationToken();
+        } while (token != null);
+        return ids;
+    }
+
+    @Test
+    void pagesByColumnContinueAcrossDuplicateValues() {
+        List<Long> expected = persons.stream()
+                .filter(person -> person.getSurname() != null)
+                .sorted(Comparator.comparing(Person::getSurname).thenComparing(Person::getId))
+                .map(Person::getId)
+                .toList();
+
+        for (int limit = 1; limit <= SURNAMES.length; limit++) {
+            assertEquals(expected, walk("surname", limit), "page size " + limit);
+        }
+    }
+
+    @Test
+    void pagesByIdReturnAllRows() {
+        List<Long> expected = persons.stream().map(Person::getId).sorted().toList();
+        assertEquals(expected, walk(null, 3));
+
+        Page<Person> page = manager.page(Person.class, persons.get(5).getId(), 10);
+        assertEquals(persons.subList(6, SURNAMES.length), page.getItems());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void tokenOfAnotherColumnIsRejected() {
+        String token = manager.page(Person.class, "surname", null, 1).getContinuationToken();
+        assertThrows(PersistenceException.class, () -> manager.page(Person.class, "age", token, 1));
+    }
+}
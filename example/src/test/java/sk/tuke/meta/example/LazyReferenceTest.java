@@ -0,0 +1,60 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyReferenceTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void nullForeignKeyLoadsAsNull() throws Exception {
+        Person person = new Person("Hrasko", "Janko", 30);
+        manager.save(person);
+
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            Person loaded = reader.get(Person.class, person.getId()).orElseThrow();
+            assertNotSame(person, loaded);
+            assertNull(loaded.getDepartment());
+
+            List<Person> all = reader.getAll(Person.class);
+            assertNull(all.get(0).getDepartment());
+        }
+    }
+
+    @Test
+    void foreignKeyLoadsAsProxy() throws Exception {
+        Department department = new Department("Development", "DVLP");
+        manager.save(department);
+        Person person = new Person("Hrasko", "Janko", 30);
+        person.setDepartment(department);
+        manager.save(person);
+
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            Department loaded = reader.get(Person.class, person.getId()).orElseThrow().getDepartment();
+            assertNotNull(loaded);
+            assertEquals("Development", loaded.getName());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.MetricsCollector;
+import sk.tuke.meta.persistence.PersistenceListener.Operation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private MetricsCollector metrics;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        metrics = new MetricsCollector();
+        manager.setListener(metrics);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void generatedDaosReportOperations() {
+        manager.saveAll(List.of(new Department("Development", "DVLP"), new Department("Testing", "TEST")));
+        manager.getAll(Department.class);
+
+        assertEquals(2, metrics.getOperation(Operation.SAVE_ALL, null).getRows());
+        assertEquals(2, metrics.getOperation(Operation.GET_ALL, Department.class).getRows());
+    }
+
+    @Test
+    void lazyLoadsAreCounted() throws Exception {
+        Department department = new Department("Development", "DVLP");
+        manager.save(department);
+        Person person = new Person("Hrasko", "Janko", 30);
+        person.setDepartment(department);
+        manager.save(person);
+
+        try (GeneratedPersistenceManager reader = new GeneratedPersistenceManager(connection)) {
+            reader.setListener(metrics);
+            Department proxy = reader.get(Person.class, person.getId()).orElseThrow().getDepartment();
+            assertEquals(0, metrics.getLazyLoads());
+
+            proxy.getName();
+            proxy.getCode();
+            assertEquals(1, metrics.getLazyLoads(Department.class));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.PersistenceListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionTest {
+    private record NameAndAge(String name, int age) {
+    }
+
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private Department development;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+
+        development = new Department("Development", "DVLP");
+        manager.save(development);
+        manager.saveAll(List.of(new Person("Hrasko", "Janko", 30), new Person("Mrkvicka", "Jozko", 40),
+                new Person("Fazulka", "Marienka", 20)));
+        manager.saveAll(List.of(new Project("Compiler", development), new Project("Website", null)));
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void selectedFieldsAreMappedToRecords() {
+        List<NameAndAge> rows = new PersonQuery(manager)
+                .where(PersonQuery.AGE.ge(30))
+                .orderBy(PersonQuery.AGE.asc())
+                .select(PersonQuery.NAME, PersonQuery.AGE, NameAndAge::new);
+
+        assertEquals(List.of(new NameAndAge("Janko", 30), new NameAndAge("Jozko", 40)), rows);
+    }
+
+    @Test
+    void selectedFieldsAreReturnedAsRows() {
+        List<Object[]> rows = new PersonQuery(manager)
+                .orderBy(PersonQuery.AGE.desc())
+                .limit(2)
+                .select(PersonQuery.SURNAME, PersonQuery.AGE);
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[]{"Mrkvicka", 40}, rows.get(0));
+        assertArrayEquals(new Object[]{"Hrasko", 30}, rows.get(1));
+    }
+
+    @Test
+    void singleFieldIsMapped() {
+        List<String> names = new PersonQuery(manager)
+                .orderBy(PersonQuery.NAME.asc())
+                .select(PersonQuery.NAME, String::toUpperCase);
+
+        assertEquals(List.of("JANKO", "JOZKO", "MARIENKA"), names);
+    }
+
+    @Test
+    void referencesAreSelectedAsIdsWithoutLoading() {
+        List<String> statements = new ArrayList<>();
+        manager.setListener(new PersistenceListener() {
+            @Override
+            public void statementCompleted(String sql, long nanos) {
+                statements.add(sql);
+            }
+        });
+
+        List<Object[]> rows = new ProjectQuery(manager)
+                .orderBy(ProjectQuery.NAME.asc())
+                .select(ProjectQuery.NAME, ProjectQuery.DEPARTMENT);
+
+        assertArrayEquals(new Object[]{"Compiler", development.getPk()}, rows.get(0));
+        assertArrayEquals(new Object[]{"Website", null}, rows.get(1));
+        assertEquals(1, statements.size());
+        assertFalse(statements.get(0).contains("*"), statements.get(0));
+    }
+}
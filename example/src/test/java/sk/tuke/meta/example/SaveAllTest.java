@@ -0,0 +1,93 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveAllTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private static List<Person> persons(int count, Department department) {
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Person person = new Person("Surname" + i, "Name" + i, i);
+            person.setDepartment(department);
+            persons.add(person);
+        }
+        return persons;
+    }
+
+    private long count(String table) throws SQLException {
+        return ExampleDatabase.queryLong(connection, "SELECT COUNT(*) FROM '" + table + "'");
+    }
+
+    @Test
+    void insertedEntitiesGetIdsOfTheirRows() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        List<Person> persons = persons(300, department);
+        manager.saveAll(persons);
+
+        assertTrue(department.getPk() > 0);
+        assertEquals(300, count("PersonTable"));
+        for (Person person : persons) {
+            assertEquals(person.getAge(), ExampleDatabase.queryLong(connection,
+                    "SELECT age FROM 'PersonTable' WHERE primaryKey = " + person.getId()));
+            assertEquals(department.getPk(), ExampleDatabase.queryLong(connection,
+                    "SELECT department FROM 'PersonTable' WHERE primaryKey = " + person.getId()));
+        }
+    }
+
+    @Test
+    void failedRowUnsavesRowsInsertedBeforeIt() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        List<Person> persons = persons(13, department);
+        persons.get(10).setName(null);
+
+        assertThrows(PersistenceException.class, () -> manager.saveAll(persons));
+        assertEquals(0, count("PersonTable"));
+        assertEquals(0, count("Department"));
+        assertEquals(0, department.getPk());
+        for (Person person : persons) {
+            assertEquals(0, person.getId());
+        }
+
+        persons.get(10).setName("Name");
+        manager.saveAll(persons);
+        assertEquals(13, count("PersonTable"));
+        assertEquals(1, count("Department"));
+    }
+
+    @Test
+    void rollbackOfEnclosingTransactionUnsavesInsertedRows() throws SQLException {
+        List<Project> projects = List.of(new Project("A", null), new Project("B", null));
+        manager.startTransaction();
+        manager.saveAll(projects);
+        manager.rollbackTransaction();
+
+        manager.saveAll(projects);
+        assertEquals(2, count("Project"));
+    }
+}
@@ -0,0 +1,58 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.SlowQuery;
+import sk.tuke.meta.persistence.SlowQueryLog;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryLogTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private final List<SlowQuery> reported = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+        manager.save(new Person("Hrasko", "Janko", 30));
+        manager.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, reported::add));
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private SlowQuery last() {
+        assertFalse(reported.isEmpty());
+        return reported.get(reported.size() - 1);
+    }
+
+    @Test
+    void getByUnindexedColumnIsFullTableScan() {
+        manager.getBy(Person.class, "age", 30);
+
+        assertEquals(List.of(30), last().getParameters());
+        assertTrue(last().isFullTableScan(), last().toString());
+    }
+
+    @Test
+    void getByIndexedColumnIsNotFullTableScan() {
+        manager.getBy(Person.class, "surname", "Hrasko");
+
+        assertEquals(List.of("Hrasko"), last().getParameters());
+        assertFalse(last().isFullTableScan(), last().toString());
+    }
+}
@@ -0,0 +1,81 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.PersistenceListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        try (GeneratedPersistenceManager writer = new GeneratedPersistenceManager(connection)) {
+            writer.createTables();
+            List<Department> departments = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                departments.add(new Department("D" + i, "C" + i));
+            }
+            // Each chunk of 100 projects references its own 10 departments
+            List<Project> projects = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                projects.add(new Project("P" + i, departments.get(i / 10)));
+            }
+            writer.saveAll(projects);
+        }
+
+        manager = new GeneratedPersistenceManager(connection);
+        manager.setFetchSize(100);
+        manager.setListener(new PersistenceListener() {
+            @Override
+            public void statementCompleted(String sql, long nanos) {
+                statements.add(sql);
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long departmentQueries() {
+        return statements.stream().filter(sql -> sql.startsWith("SELECT * FROM 'Department'")).count();
+    }
+
+    @Test
+    void eagerReferencesAreLoadedOncePerChunk() {
+        List<Project> projects;
+        try (Stream<Project> stream = manager.streamAll(Project.class)) {
+            projects = stream.toList();
+        }
+
+        assertEquals(300, projects.size());
+        for (Project project : projects) {
+            assertEquals("D" + Integer.parseInt(project.name().substring(1)) / 10, project.department().getName());
+        }
+        assertEquals(3, departmentQueries());
+    }
+
+    @Test
+    void onlyChunksReadByTheStreamAreCompleted() {
+        try (Stream<Project> stream = manager.streamAll(Project.class)) {
+            assertEquals(5, stream.limit(5).count());
+        }
+        assertEquals(1, departmentQueries());
+    }
+}
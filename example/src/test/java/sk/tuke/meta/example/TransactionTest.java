@@ -0,0 +1,84 @@
+package sk.tuke.meta.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sk.tuke.meta.persistence.GeneratedPersistenceManager;
+import sk.tuke.meta.persistence.Propagation;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+    private Connection connection;
+    private GeneratedPersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = ExampleDatabase.open();
+        manager = new GeneratedPersistenceManager(connection);
+        manager.createTables();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long count(String table) throws SQLException {
+        return ExampleDatabase.queryLong(connection, "SELECT COUNT(*) FROM '" + table + "'");
+    }
+
+    @Test
+    void savepointRollbackUnsavesInsertedEntities() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        Person person = new Person("Hrasko", "Janko", 30);
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(department);
+        manager.saveAll(List.of(person));
+        manager.rollbackTransaction();
+        assertEquals(0, department.getPk());
+        assertEquals(0, person.getId());
+
+        manager.save(department);
+        manager.save(person);
+        manager.commitTransaction();
+        assertEquals(1, count("Department"));
+        assertEquals(1, count("PersonTable"));
+    }
+
+    @Test
+    void rollbackUnsavesInsertedEntities() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        manager.startTransaction();
+        manager.save(department);
+        manager.rollbackTransaction();
+        assertEquals(0, department.getPk());
+
+        manager.save(department);
+        assertEquals(1, count("Department"));
+    }
+
+    @Test
+    void savepointRollbackForgetsInsertedImmutableEntities() throws SQLException {
+        Department department = new Department("Development", "DVLP");
+        manager.save(department);
+        Project project = new Project("Persistence", department);
+
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(project);
+        manager.rollbackTransaction();
+
+        manager.save(project);
+        manager.commitTransaction();
+        assertEquals(1, count("Project"));
+        assertThrows(PersistenceException.class, () -> manager.save(project));
+    }
+}
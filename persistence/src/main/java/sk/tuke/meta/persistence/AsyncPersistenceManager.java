@@ -0,0 +1,245 @@
+package sk.tuke.meta.persistence;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Non-blocking facade of a {@link DAOPersistenceManager}. Operations run on an executor,
+ * by default one virtual thread per operation when the runtime supports them,
+ * and their results are delivered as {@link CompletableFuture}s and {@link Flow.Publisher}s.
+ * <p>
+ * The number of operations running at once is limited to the number of connections
+ * of the manager's {@link ConnectionProvider}, further operations wait without holding a connection.
+ * Blocking in the library is done with <code>java.util.concurrent</code> locks only,
+ * so waiting virtual threads do not pin their carrier threads.
+ */
+public class AsyncPersistenceManager implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final DAOPersistenceManager manager;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+
+    public AsyncPersistenceManager(DAOPersistenceManager manager) {
+        this(manager, newVirtualThreadExecutor(), maxConcurrency(manager.getConnectionProvider()), true);
+    }
+
+    /**
+     * @param executor       executor running the operations, it is not shut down with the manager
+     * @param maxConcurrency maximum number of operations running at once
+     */
+    public AsyncPersistenceManager(DAOPersistenceManager manager, Executor executor, int maxConcurrency) {
+        this(manager, executor, maxConcurrency, false);
+    }
+
+    private AsyncPersistenceManager(DAOPersistenceManager manager, Executor executor, int maxConcurrency,
+                                    boolean ownsExecutor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+        }
+        this.manager = manager;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * @return a virtual thread per task executor, or a cached pool of daemon threads
+     * if the runtime does not provide virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "persistence-async-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+    }
+
+    private static int maxConcurrency(ConnectionProvider connectionProvider) {
+        if (connectionProvider instanceof ConnectionPool pool) {
+            return pool.getMaxReaders() + 1;
+        }
+        return 1;
+    }
+
+    public DAOPersistenceManager getManager() {
+        return manager;
+    }
+
+    /**
+     * @see PersistenceManager#get(Class, long)
+     */
+    public <T> CompletableFuture<Optional<T>> get(Class<T> type, long id) {
+        return submit(() -> manager.get(type, id));
+    }
+
+    /**
+     * @see PersistenceManager#getByIds(Class, Collection)
+     */
+    public <T> CompletableFuture<Map<Long, T>> getByIds(Class<T> type, Collection<Long> ids) {
+        return submit(() -> manager.getByIds(type, ids));
+    }
+
+    /**
+     * @see PersistenceManager#getAll(Class)
+     */
+    public <T> CompletableFuture<List<T>> getAll(Class<T> type) {
+        return submit(() -> manager.getAll(type));
+    }
+
+    /**
+     * @see PersistenceManager#getBy(Class, String, Object)
+     */
+    public <T> CompletableFuture<List<T>> getBy(Class<T> type, String fieldName, Object value) {
+        return submit(() -> manager.getBy(type, fieldName, value));
+    }
+
+    /**
+     * @see PersistenceManager#page(Class, long, int)
+     */
+    public <T> CompletableFuture<Page<T>> page(Class<T> type, long afterId, int limit) {
+        return submit(() -> manager.page(type, afterId, limit));
+    }
+
+    /**
+     * @see PersistenceManager#page(Class, String, String, int)
+     */
+    public <T> CompletableFuture<Page<T>> page(Class<T> type, String column, String continuationToken, int limit) {
+        return submit(() -> manager.page(type, column, continuationToken, limit));
+    }
+
+    /**
+     * Publish all entities of specified type. Each subscriber runs its own query,
+     * rows are read only as fast as the subscriber requests them.
+     *
+     * @see PersistenceManager#streamAll(Class)
+     */
+    public <T> Flow.Publisher<T> streamAll(Class<T> type) {
+        return publish(() -> manager.streamAll(type));
+    }
+
+    /**
+     * Publish entities based on any field value, as described in {@link #streamAll(Class)}.
+     *
+     * @see PersistenceManager#streamBy(Class, String, Object)
+     */
+    public <T> Flow.Publisher<T> streamBy(Class<T> type, String fieldName, Object value) {
+        return publish(() -> manager.streamBy(type, fieldName, value));
+    }
+
+    /**
+     * @see PersistenceManager#save(Object)
+     */
+    public CompletableFuture<Long> save(Object entity) {
+        return submit(() -> manager.save(entity));
+    }
+
+    /**
+     * @see PersistenceManager#saveAll(Collection)
+     */
+    public CompletableFuture<Void> saveAll(Collection<?> entities) {
+        return submit(() -> {
+            manager.saveAll(entities);
+            return null;
+        });
+    }
+
+    /**
+     * @see PersistenceManager#delete(Object)
+     */
+    public CompletableFuture<Void> delete(Object entity) {
+        return submit(() -> {
+            manager.delete(entity);
+            return null;
+        });
+    }
+
+    private <R> CompletableFuture<R> submit(Callable<R> operation) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone() || !acquire(future)) {
+                    return;
+                }
+                try {
+                    future.complete(operation.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> Flow.Publisher<T> publish(Supplier<Stream<T>> query) {
+        return subscriber -> {
+            SubmissionPublisher<T> publisher = new SubmissionPublisher<>(executor, Flow.defaultBufferSize());
+            publisher.subscribe(subscriber);
+
+            CompletableFuture<Void> done = submit(() -> {
+                try (Stream<T> stream = query.get()) {
+                    Iterator<T> iterator = stream.iterator();
+                    // submit blocks while the buffer of the subscriber is full
+                    while (publisher.hasSubscribers() && iterator.hasNext()) {
+                        publisher.submit(iterator.next());
+                    }
+                }
+                return null;
+            });
+            done.whenComplete((result, exception) -> {
+                if (exception == null) {
+                    publisher.close();
+                } else {
+                    publisher.closeExceptionally(exception);
+                }
+            });
+        };
+    }
+
+    private boolean acquire(CompletableFuture<?> future) {
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    /**
+     * Shut down the executor, if the manager created it. The wrapped manager is not closed.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+}
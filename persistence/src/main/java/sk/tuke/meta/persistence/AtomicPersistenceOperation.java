@@ -1,8 +1,16 @@
 package sk.tuke.meta.persistence;
 
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Run the method in a transaction of the persistence manager it uses.
+ * The transaction is committed when the method returns and rolled back when it throws.
+ */
+@Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface AtomicPersistenceOperation {
+    Propagation propagation() default Propagation.REQUIRED;
 }
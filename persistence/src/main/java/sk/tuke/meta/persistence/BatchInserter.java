@@ -0,0 +1,108 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts many entities of one table using multi-row
+ * <code>INSERT ... VALUES (...),(...) RETURNING id</code> statements.
+ * <p>
+ * Entities are split into chunks with a power of two rows each, e.g. 13 entities are inserted
+ * by statements of 8, 4 and 1 rows, so only a few distinct statements are ever prepared
+ * and they stay in the statement cache. Rows of one statement are at most
+ * {@link BatchLoader#MAX_BATCH_SIZE}, less if they would exceed {@link #MAX_PARAMETERS}.
+ * <p>
+ * SQLite returns the ids in no particular order, but assigns increasing ids to the rows
+ * of one statement, so the sorted ids belong to the rows in their <code>VALUES</code> order.
+ */
+public final class BatchInserter {
+    /**
+     * Parameters of one statement, the lowest limit of the SQLite versions in use.
+     */
+    public static final int MAX_PARAMETERS = 999;
+
+    @FunctionalInterface
+    public interface Binder<T> {
+        /**
+         * Bind the columns of the entity, starting at parameter <code>offset + 1</code>.
+         */
+        void bind(PreparedStatement statement, int offset, T entity) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Inserted<T> {
+        /**
+         * Called for each entity once its row is inserted.
+         */
+        void inserted(T entity, long id);
+    }
+
+    private final int columnCount;
+    /**
+     * Statement inserting <code>2^i</code> rows at index i.
+     */
+    private final String[] sql;
+
+    /**
+     * @param table    name of the table
+     * @param columns  inserted columns, in the order the binder binds them
+     * @param idColumn generated primary key
+     */
+    public BatchInserter(String table, String[] columns, String idColumn) {
+        this.columnCount = columns.length;
+        if (columns.length == 0) {
+            sql = new String[]{String.format("INSERT INTO '%s' DEFAULT VALUES RETURNING %s", table, idColumn)};
+            return;
+        }
+
+        int maxRows = Math.min(BatchLoader.MAX_BATCH_SIZE, MAX_PARAMETERS / columns.length);
+        sql = new String[32 - Integer.numberOfLeadingZeros(maxRows)];
+        String row = "(" + String.join(",", Collections.nCopies(columns.length, "?")) + ")";
+        for (int i = 0; i < sql.length; i++) {
+            sql[i] = String.format("INSERT INTO '%s' (%s) VALUES %s RETURNING %s", table,
+                    String.join(",", columns), String.join(",", Collections.nCopies(1 << i, row)), idColumn);
+        }
+    }
+
+    /**
+     * @param statements source of prepared statements
+     * @param entities   entities to insert, in order
+     * @param binder     binds the columns of one row
+     * @param inserted   gets each inserted entity with its generated id
+     */
+    public <T> void insert(StatementSource statements, List<T> entities, Binder<T> binder, Inserted<T> inserted)
+            throws SQLException {
+        int from = 0;
+        while (from < entities.size()) {
+            int bucket = Math.min(sql.length - 1, 31 - Integer.numberOfLeadingZeros(entities.size() - from));
+            int rows = 1 << bucket;
+
+            try (CachedStatement cached = statements.prepare(sql[bucket])) {
+                PreparedStatement statement = cached.get();
+                for (int i = 0; i < rows; i++) {
+                    binder.bind(statement, i * columnCount, entities.get(from + i));
+                }
+
+                long[] ids = new long[rows];
+                int count = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids[count++] = resultSet.getLong(1);
+                    }
+                }
+                if (count != rows) {
+                    throw new SQLException("Insert of " + rows + " rows returned " + count + " ids.");
+                }
+                Arrays.sort(ids);
+                for (int i = 0; i < rows; i++) {
+                    inserted.inserted(entities.get(from + i), ids[i]);
+                }
+            }
+            from += rows;
+        }
+    }
+}
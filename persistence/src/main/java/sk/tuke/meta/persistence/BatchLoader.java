@@ -0,0 +1,76 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Loads entities by many ids using <code>WHERE id IN (...)</code> queries.
+ * <p>
+ * Ids are split into chunks of at most {@link #MAX_BATCH_SIZE}. Each chunk is padded
+ * to the next power of two by repeating an id, so only a few distinct statements
+ * are ever prepared and they stay in the statement cache.
+ */
+public final class BatchLoader {
+    public static final int MAX_BATCH_SIZE = 512;
+
+    private static final String[] PLACEHOLDERS = new String[Integer.numberOfTrailingZeros(MAX_BATCH_SIZE) + 1];
+
+    static {
+        for (int i = 0; i < PLACEHOLDERS.length; i++) {
+            PLACEHOLDERS[i] = "(" + String.join(",", Collections.nCopies(1 << i, "?")) + ")";
+        }
+    }
+
+    @FunctionalInterface
+    public interface Query<T> {
+        /**
+         * Execute the bound statement and hydrate all rows it returns.
+         */
+        List<T> execute(PreparedStatement statement) throws SQLException;
+    }
+
+    private BatchLoader() {
+    }
+
+    /**
+     * @param statements source of prepared statements
+     * @param sqlPrefix  query ending with <code>IN</code>, the parameter list is appended
+     * @param ids        ids to load, duplicates and zeros are ignored
+     * @param query      hydrates the rows of one chunk
+     * @param idOf       id of a loaded entity
+     * @return loaded entities by their id, ids without a row are missing
+     */
+    public static <T> Map<Long, T> load(StatementSource statements, String sqlPrefix, Collection<Long> ids,
+                                        Query<T> query, ToLongFunction<T> idOf) throws SQLException {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.remove(Long.valueOf(0));
+
+        Map<Long, T> entities = new LinkedHashMap<>();
+        for (int from = 0; from < distinct.size(); from += MAX_BATCH_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + MAX_BATCH_SIZE, distinct.size()));
+            int bucket = 32 - Integer.numberOfLeadingZeros(chunk.size() - 1);
+
+            try (CachedStatement cached = statements.prepare(sqlPrefix + PLACEHOLDERS[bucket])) {
+                PreparedStatement statement = cached.get();
+                for (int i = 0; i < 1 << bucket; i++) {
+                    statement.setLong(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+
+                for (T entity : query.execute(statement)) {
+                    if (entity != null) {
+                        entities.put(idOf.applyAsLong(entity), entity);
+                    }
+                }
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,34 @@
+package sk.tuke.meta.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Enables the shared second-level cache for an entity, see {@link EntityCache}.
+ * Suitable for read-mostly entities loaded by id.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+    enum Eviction {
+        /**
+         * Evict the least recently used entity.
+         */
+        LRU,
+        /**
+         * Admit a new entity only if it is used more frequently than the entity it would evict.
+         */
+        TINY_LFU
+    }
+
+    Eviction eviction() default Eviction.LRU;
+
+    int maxSize() default 1000;
+
+    /**
+     * @return seconds after which a cached entity expires, 0 to never expire
+     */
+    long expireAfterWriteSeconds() default 0;
+}
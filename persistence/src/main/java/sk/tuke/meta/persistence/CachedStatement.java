@@ -0,0 +1,88 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Prepared statement checked out from a {@link StatementCache}.
+ * Closing it returns the statement to the cache instead of closing it.
+ */
+public final class CachedStatement implements AutoCloseable {
+    private final StatementCache cache;
+    private final PreparedStatement statement;
+    private final boolean cached;
+    boolean inUse;
+    boolean evicted;
+    ConnectionLease lease;
+    private PersistenceListener listener;
+    private SlowQueryLog slowQueryLog;
+    private ObservedStatement observed;
+    private String sql;
+
+    CachedStatement(StatementCache cache, PreparedStatement statement, boolean cached) {
+        this.cache = cache;
+        this.statement = statement;
+        this.cached = cached;
+    }
+
+    /**
+     * @return the statement, measuring its execution while a listener or {@link SlowQueryLog} observes it
+     */
+    public PreparedStatement get() {
+        return listener == null ? statement : observed.getProxy();
+    }
+
+    PreparedStatement getStatement() {
+        return statement;
+    }
+
+    boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * Report the execution time of the statement to the listener when it is released,
+     * and to the slow query log if it is slow.
+     */
+    void observe(PersistenceListener listener, SlowQueryLog slowQueryLog, String sql) {
+        this.listener = listener;
+        this.slowQueryLog = slowQueryLog;
+        this.sql = sql;
+        if (observed == null) {
+            observed = new ObservedStatement(statement);
+        }
+        observed.reset(slowQueryLog != null);
+    }
+
+    /**
+     * Return the statement to the cache and release the connection lease it was prepared on, if any.
+     */
+    @Override
+    public void close() throws SQLException {
+        ConnectionLease lease = this.lease;
+        this.lease = null;
+        PersistenceListener listener = this.listener;
+        this.listener = null;
+        SlowQueryLog slowQueryLog = this.slowQueryLog;
+        this.slowQueryLog = null;
+        boolean executed = listener != null && observed.getExecutions() > 0;
+        long nanos = executed ? observed.getExecutionNanos() : 0;
+        SlowQuery slowQuery = null;
+        try {
+            if (executed && slowQueryLog != null && slowQueryLog.isSlow(nanos)) {
+                slowQuery = slowQueryLog.capture(statement.getConnection(), sql, observed.getParameters(), nanos);
+            }
+            cache.release(this);
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+        if (executed) {
+            listener.statementCompleted(sql, nanos);
+        }
+        if (slowQuery != null) {
+            slowQueryLog.report(slowQuery);
+        }
+    }
+}
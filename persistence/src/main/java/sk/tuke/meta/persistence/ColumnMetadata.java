@@ -0,0 +1,488 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.PersistenceException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapping of one entity field to its database column.
+ * <p>
+ * Field values are accessed through a {@link VarHandle} resolved once, held as a constant
+ * by the {@link FieldAccessor} of the column, instead of access-checked {@link Field#get}/{@link Field#set} calls.
+ * How values are read from rows and bound to statements is chosen once by the field type, see {@link ValueType}.
+ */
+public final class ColumnMetadata {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final byte[] ACCESSOR_TEMPLATE = accessorTemplate();
+
+    private final Field field;
+    private final FieldAccessor accessor;
+    private final ValueType valueType;
+    private final int index;
+    private final String name;
+    private final boolean primaryKey;
+    private final boolean unique;
+    private final boolean nullable;
+    private final FetchType fetchType;
+    private final Class<?> targetEntity;
+
+    ColumnMetadata(Field field, int index, boolean primaryKey) {
+        this.field = field;
+        this.index = index;
+        this.name = columnName(field);
+        this.primaryKey = primaryKey;
+
+        Column column = field.getAnnotation(Column.class);
+        this.unique = column != null && column.unique();
+        this.nullable = column == null || column.nullable();
+
+        ManyToOne manyToOne = field.getAnnotation(ManyToOne.class);
+        if (manyToOne != null) {
+            this.fetchType = manyToOne.fetch();
+            this.targetEntity = manyToOne.targetEntity() != void.class ? manyToOne.targetEntity() : field.getType();
+        } else {
+            this.fetchType = null;
+            this.targetEntity = null;
+        }
+
+        this.accessor = accessor(field);
+        this.valueType = ValueType.of(field.getType());
+    }
+
+    private static byte[] accessorTemplate() {
+        try (InputStream template = ColumnMetadata.class.getResourceAsStream("FieldAccessorTemplate.class")) {
+            if (template == null) {
+                throw new PersistenceException("Class file of FieldAccessorTemplate was not found.");
+            }
+            return template.readAllBytes();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Define a hidden class from {@link FieldAccessorTemplate} holding the handle of the field.
+     */
+    private static FieldAccessor accessor(Field field) {
+        try {
+            VarHandle handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), LOOKUP).unreflectVarHandle(field);
+            Class<?> type = LOOKUP.defineHiddenClassWithClassData(ACCESSOR_TEMPLATE, handle, true).lookupClass();
+            return (FieldAccessor) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column != null && column.name().length() > 0) {
+            return column.name();
+        }
+        return field.getName();
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return position of the column in {@link EntityMetadata#getAllColumns()}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFieldName() {
+        return field.getName();
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public boolean isPrimaryKey() {
+        return primaryKey;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public boolean isManyToOne() {
+        return targetEntity != null;
+    }
+
+    /**
+     * @return fetch type of a <code>@ManyToOne</code> reference, <code>null</code> for plain columns
+     */
+    public FetchType getFetchType() {
+        return fetchType;
+    }
+
+    /**
+     * @return referenced entity class of a <code>@ManyToOne</code> reference, <code>null</code> for plain columns
+     */
+    public Class<?> getTargetEntity() {
+        return targetEntity;
+    }
+
+    public Object get(Object entity) {
+        return accessor.get(entity);
+    }
+
+    long getLong(Object entity) {
+        return accessor.getLong(entity);
+    }
+
+    void setLong(Object entity, long value) {
+        accessor.setLong(entity, value);
+    }
+
+    /**
+     * Read the value of a plain column from the current row with the getter of the field type,
+     * so values of primitive fields are not boxed, and set the field to it.
+     *
+     * @return <code>false</code> if the value is <code>null</code>, the field is then left untouched
+     */
+    boolean read(Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+        return valueType.read(this, entity, resultSet, columnIndex);
+    }
+
+    /**
+     * Read the value of a plain column from the current row with the getter of the field type,
+     * for entities created with all their values at once.
+     *
+     * @return the value, <code>null</code> if the column is <code>null</code>
+     */
+    Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+        return valueType.readValue(resultSet, columnIndex);
+    }
+
+    /**
+     * Bind the value of a plain column with the setter of the field type, so values of primitive fields
+     * are not boxed.
+     */
+    void bind(Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+        valueType.bind(accessor, entity, statement, parameterIndex);
+    }
+
+    /**
+     * Set the field to a value read from the database. Numeric values are
+     * converted to the field type, <code>null</code> leaves primitive fields untouched.
+     */
+    public void set(Object entity, Object value) {
+        if (value == null) {
+            if (!field.getType().isPrimitive()) {
+                accessor.set(entity, null);
+            }
+            return;
+        }
+
+        if (value instanceof Number number) {
+            value = convertNumber(number, field.getType());
+        }
+        accessor.set(entity, value);
+    }
+
+    /**
+     * Convert a number read from the database to a field or value of given type.
+     */
+    static Object convertNumber(Number number, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return number.intValue();
+        } else if (type == long.class || type == Long.class) {
+            return number.longValue();
+        } else if (type == double.class || type == Double.class) {
+            return number.doubleValue();
+        } else if (type == float.class || type == Float.class) {
+            return number.floatValue();
+        } else if (type == short.class || type == Short.class) {
+            return number.shortValue();
+        } else if (type == byte.class || type == Byte.class) {
+            return number.byteValue();
+        } else if (type == boolean.class || type == Boolean.class) {
+            return number.intValue() != 0;
+        }
+        return number;
+    }
+
+    /**
+     * JDBC getters and setters of one field type, chosen once per column. Boxed types
+     * are read with the getter of their primitive type, <code>null</code> is checked by {@link ResultSet#wasNull()}.
+     */
+    private enum ValueType {
+        LONG {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                long value = resultSet.getLong(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setLong(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                long value = resultSet.getLong(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setLong(parameterIndex, accessor.getLong(entity));
+            }
+        },
+        INT {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                int value = resultSet.getInt(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setInt(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                int value = resultSet.getInt(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setInt(parameterIndex, accessor.getInt(entity));
+            }
+        },
+        DOUBLE {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                double value = resultSet.getDouble(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setDouble(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                double value = resultSet.getDouble(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setDouble(parameterIndex, accessor.getDouble(entity));
+            }
+        },
+        BOOLEAN {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                boolean value = resultSet.getBoolean(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setBoolean(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                boolean value = resultSet.getBoolean(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setBoolean(parameterIndex, accessor.getBoolean(entity));
+            }
+        },
+        FLOAT {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                float value = resultSet.getFloat(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setFloat(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                float value = resultSet.getFloat(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setFloat(parameterIndex, accessor.getFloat(entity));
+            }
+        },
+        SHORT {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                short value = resultSet.getShort(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setShort(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                short value = resultSet.getShort(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setShort(parameterIndex, accessor.getShort(entity));
+            }
+        },
+        BYTE {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                byte value = resultSet.getByte(columnIndex);
+                if (resultSet.wasNull()) {
+                    return false;
+                }
+                column.accessor.setByte(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                byte value = resultSet.getByte(columnIndex);
+                return resultSet.wasNull() ? null : value;
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setByte(parameterIndex, accessor.getByte(entity));
+            }
+        },
+        BOXED_LONG(LONG),
+        BOXED_INT(INT),
+        BOXED_DOUBLE(DOUBLE),
+        BOXED_BOOLEAN(BOOLEAN),
+        BOXED_FLOAT(FLOAT),
+        BOXED_SHORT(SHORT),
+        BOXED_BYTE(BYTE),
+        STRING {
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                return resultSet.getString(columnIndex);
+            }
+
+            @Override
+            void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+                statement.setString(parameterIndex, (String) accessor.get(entity));
+            }
+        },
+        OBJECT {
+            @Override
+            boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+                Object value = resultSet.getObject(columnIndex);
+                if (value == null) {
+                    return false;
+                }
+                column.set(entity, value);
+                return true;
+            }
+
+            @Override
+            Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+                return resultSet.getObject(columnIndex);
+            }
+        };
+
+        /**
+         * Primitive type read for a boxed type.
+         */
+        private final ValueType primitive;
+
+        ValueType() {
+            this(null);
+        }
+
+        ValueType(ValueType primitive) {
+            this.primitive = primitive;
+        }
+
+        static ValueType of(Class<?> type) {
+            if (type == long.class) {
+                return LONG;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == float.class) {
+                return FLOAT;
+            } else if (type == short.class) {
+                return SHORT;
+            } else if (type == byte.class) {
+                return BYTE;
+            } else if (type == Long.class) {
+                return BOXED_LONG;
+            } else if (type == Integer.class) {
+                return BOXED_INT;
+            } else if (type == Double.class) {
+                return BOXED_DOUBLE;
+            } else if (type == Boolean.class) {
+                return BOXED_BOOLEAN;
+            } else if (type == Float.class) {
+                return BOXED_FLOAT;
+            } else if (type == Short.class) {
+                return BOXED_SHORT;
+            } else if (type == Byte.class) {
+                return BOXED_BYTE;
+            } else if (type == String.class) {
+                return STRING;
+            }
+            return OBJECT;
+        }
+
+        /**
+         * @return <code>false</code> if the value is <code>null</code>, the field is then left untouched
+         */
+        boolean read(ColumnMetadata column, Object entity, ResultSet resultSet, int columnIndex) throws SQLException {
+            Object value = readValue(resultSet, columnIndex);
+            if (value == null) {
+                return false;
+            }
+            column.accessor.set(entity, value);
+            return true;
+        }
+
+        Object readValue(ResultSet resultSet, int columnIndex) throws SQLException {
+            return primitive.readValue(resultSet, columnIndex);
+        }
+
+        void bind(FieldAccessor accessor, Object entity, PreparedStatement statement, int parameterIndex) throws SQLException {
+            statement.setObject(parameterIndex, accessor.get(entity));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection leased from a {@link ConnectionProvider} by the current thread.
+ * Closing the lease returns the connection to the provider, it does not close it.
+ */
+public final class ConnectionLease implements AutoCloseable {
+    private final ConnectionProvider provider;
+    private final StatementCache statementCache;
+    private final boolean write;
+    final Object binding;
+    private boolean closed;
+
+    ConnectionLease(ConnectionProvider provider, StatementCache statementCache, boolean write, Object binding) {
+        this.provider = provider;
+        this.statementCache = statementCache;
+        this.write = write;
+        this.binding = binding;
+    }
+
+    public Connection getConnection() {
+        return statementCache.getConnection();
+    }
+
+    /**
+     * @return statement cache of the leased connection
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    public boolean isWrite() {
+        return write;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        provider.release(this);
+    }
+}
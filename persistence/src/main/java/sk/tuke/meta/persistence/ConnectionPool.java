@@ -0,0 +1,219 @@
+package sk.tuke.meta.persistence;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of connections to one SQLite database file.
+ * <p>
+ * SQLite allows a single writer at a time, so the pool keeps one writer connection,
+ * leased by one thread at a time, and up to <code>maxReaders</code> read-only connections.
+ * The database is switched to WAL mode, in which readers do not block the writer
+ * and the writer does not block readers, so reads scale with the number of readers.
+ * <p>
+ * Leases are bound to the acquiring thread: nested leases reuse its connection
+ * and a thread holding the writer reads through it as well.
+ * In-memory databases cannot be pooled, as each connection would open its own database.
+ */
+public class ConnectionPool extends ConnectionProvider {
+    public static final int DEFAULT_BUSY_TIMEOUT_MILLIS = 5000;
+
+    private final DataSource dataSource;
+    private final int maxReaders;
+    private final int statementCacheCapacity;
+    private final long timeoutMillis;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final StatementCache writer;
+
+    private final BlockingQueue<StatementCache> idleReaders = new LinkedBlockingQueue<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final List<StatementCache> connections = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ReadBinding> readBindings = new ThreadLocal<>();
+    private volatile boolean closed;
+
+    private static final class ReadBinding {
+        private final StatementCache statementCache;
+        private int depth;
+
+        private ReadBinding(StatementCache statementCache) {
+            this.statementCache = statementCache;
+        }
+    }
+
+    public ConnectionPool(DataSource dataSource, int maxReaders) throws SQLException {
+        this(dataSource, maxReaders, StatementCache.DEFAULT_CAPACITY, DEFAULT_BUSY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis how long to wait for a busy database, for a free reader or for the writer
+     */
+    public ConnectionPool(DataSource dataSource, int maxReaders, int statementCacheCapacity, long timeoutMillis)
+            throws SQLException {
+        if (maxReaders < 1) {
+            throw new IllegalArgumentException("Number of readers must be positive: " + maxReaders);
+        }
+        this.dataSource = dataSource;
+        this.maxReaders = maxReaders;
+        this.statementCacheCapacity = statementCacheCapacity;
+        this.timeoutMillis = timeoutMillis;
+
+        this.writer = open(false);
+        try (Statement statement = writer.getConnection().createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+        }
+    }
+
+    private StatementCache open(boolean readOnly) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + timeoutMillis);
+            if (readOnly) {
+                statement.execute("PRAGMA query_only = 1");
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        StatementCache statementCache = new StatementCache(connection, statementCacheCapacity);
+        connections.add(statementCache);
+        return statementCache;
+    }
+
+    @Override
+    public ConnectionLease acquire(boolean write) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        if (write || writeLock.isHeldByCurrentThread()) {
+            lockWriter();
+            return new ConnectionLease(this, writer, true, null);
+        }
+
+        ReadBinding binding = readBindings.get();
+        if (binding == null || binding.depth == 0) {
+            binding = new ReadBinding(takeReader());
+            readBindings.set(binding);
+        }
+        binding.depth++;
+        return new ConnectionLease(this, binding.statementCache, false, binding);
+    }
+
+    private void lockWriter() throws SQLException {
+        boolean locked;
+        try {
+            locked = writeLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+        if (!locked) {
+            throw timedOut();
+        }
+    }
+
+    private StatementCache takeReader() throws SQLException {
+        StatementCache reader = idleReaders.poll();
+        if (reader != null) {
+            return reader;
+        }
+
+        if (openReaders.incrementAndGet() <= maxReaders) {
+            try {
+                return open(true);
+            } catch (SQLException | RuntimeException e) {
+                openReaders.decrementAndGet();
+                throw e;
+            }
+        }
+        openReaders.decrementAndGet();
+
+        try {
+            reader = idleReaders.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+        if (reader == null) {
+            throw timedOut();
+        }
+        return reader;
+    }
+
+    private SQLException timedOut() {
+        return new SQLException("Timed out waiting for a connection after " + timeoutMillis + " ms.");
+    }
+
+    @Override
+    void release(ConnectionLease lease) throws SQLException {
+        if (lease.isWrite()) {
+            writeLock.unlock();
+            return;
+        }
+
+        ReadBinding binding = (ReadBinding) lease.binding;
+        if (--binding.depth > 0) {
+            return;
+        }
+        if (readBindings.get() == binding) {
+            readBindings.remove();
+        }
+
+        if (closed) {
+            binding.statementCache.close();
+            binding.statementCache.getConnection().close();
+        } else {
+            idleReaders.offer(binding.statementCache);
+        }
+    }
+
+    public int getMaxReaders() {
+        return maxReaders;
+    }
+
+    /**
+     * @return number of read-only connections opened so far
+     */
+    public int getOpenReaders() {
+        return openReaders.get();
+    }
+
+    /**
+     * Close all connections. Connections leased at the moment are closed as well.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        idleReaders.clear();
+
+        List<SQLException> exceptions = new ArrayList<>();
+        for (StatementCache statementCache : connections) {
+            try (Connection connection = statementCache.getConnection()) {
+                statementCache.close();
+            } catch (SQLException e) {
+                exceptions.add(e);
+            }
+        }
+
+        if (!exceptions.isEmpty()) {
+            SQLException exception = exceptions.get(0);
+            exceptions.subList(1, exceptions.size()).forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.SQLException;
+
+/**
+ * Hands out connections to persistence managers.
+ * <p>
+ * A connection is leased by a thread for the duration of a statement, a stream or a transaction.
+ * Nested leases of the same thread share one connection, so statements of one operation,
+ * e.g. an insert and <code>last_insert_rowid()</code>, always run on the same connection.
+ * A lease must be closed by the thread that acquired it.
+ */
+public abstract class ConnectionProvider implements AutoCloseable {
+    private volatile PersistenceListener listener = PersistenceListener.NONE;
+    private volatile SlowQueryLog slowQueryLog;
+
+    public PersistenceListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener listener of all statements prepared by this provider and of operations of managers using it
+     */
+    public void setListener(PersistenceListener listener) {
+        this.listener = listener == null ? PersistenceListener.NONE : listener;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * @param slowQueryLog log of slow statements prepared by this provider, <code>null</code> to disable it
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Lease a connection for the current thread.
+     *
+     * @param write whether the lease will modify the database. A thread holding a write lease
+     *              gets the same connection for reads, so it sees its own uncommitted changes.
+     */
+    public abstract ConnectionLease acquire(boolean write) throws SQLException;
+
+    abstract void release(ConnectionLease lease) throws SQLException;
+
+    /**
+     * Prepare a statement on the connection leased by the current thread. The lease is held until
+     * the statement is closed. Statements starting with <code>SELECT</code> are executed on a read lease.
+     */
+    public CachedStatement prepareStatement(String sql) throws SQLException {
+        ConnectionLease lease = acquire(!isQuery(sql));
+        try {
+            CachedStatement statement = lease.getStatementCache().prepare(sql);
+            statement.lease = lease;
+            PersistenceListener listener = this.listener;
+            SlowQueryLog slowQueryLog = this.slowQueryLog;
+            if (listener != PersistenceListener.NONE || slowQueryLog != null) {
+                statement.observe(listener, slowQueryLog, sql);
+            }
+            return statement;
+        } catch (SQLException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    private static boolean isQuery(String sql) {
+        return sql.regionMatches(true, 0, "SELECT", 0, 6);
+    }
+
+    @Override
+    public abstract void close() throws SQLException;
+}
@@ -1,20 +1,77 @@
 package sk.tuke.meta.persistence;
 
 import javassist.util.proxy.ProxyObject;
+import sk.tuke.meta.persistence.PersistenceListener.Operation;
 
+import javax.persistence.FetchType;
+import javax.persistence.PersistenceException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class DAOPersistenceManager implements PersistenceManager {
-    private final Connection connection;
+    private final ConnectionProvider connectionProvider;
+    private final boolean ownsConnectionProvider;
     private final Map<Class<?>, EntityDAO<?>> daos = new LinkedHashMap<>();
+    private final IdentityMap identityMap = new IdentityMap();
+    private final TransactionalCache cache = new TransactionalCache();
+    private final TransactionContext transactions;
+    private volatile int fetchSize;
 
     public DAOPersistenceManager(Connection connection) {
-        this.connection = connection;
+        this(connection, StatementCache.DEFAULT_CAPACITY);
+    }
+
+    public DAOPersistenceManager(Connection connection, int statementCacheCapacity) {
+        this(new SingleConnectionProvider(connection, statementCacheCapacity), true);
+    }
+
+    /**
+     * Create a manager using connections of the provider, e.g. a {@link ConnectionPool}.
+     * The manager may be shared by threads, the provider is not closed with the manager.
+     */
+    public DAOPersistenceManager(ConnectionProvider connectionProvider) {
+        this(connectionProvider, false);
+    }
+
+    private DAOPersistenceManager(ConnectionProvider connectionProvider, boolean ownsConnectionProvider) {
+        this.connectionProvider = connectionProvider;
+        this.ownsConnectionProvider = ownsConnectionProvider;
+        this.transactions = new TransactionContext(connectionProvider, new TransactionContext.Synchronization() {
+            @Override
+            public void begun() {
+                identityMap.begin();
+                cache.begin();
+            }
+
+            @Override
+            public void committed() {
+                identityMap.commit();
+                cache.commit();
+            }
+
+            @Override
+            public void rolledBack(boolean savepoint, List<Object> inserted) {
+                // Rows of the inserted entities are gone, they are unsaved again
+                EntityMetadata.resetIds(inserted);
+                if (savepoint) {
+                    identityMap.clear();
+                    identityMap.forgetInserted(inserted);
+                } else {
+                    identityMap.rollback();
+                }
+                cache.rollback(savepoint);
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -28,8 +85,127 @@ public class DAOPersistenceManager implements PersistenceManager {
         daos.put(type, dao);
     }
 
-    public Connection getConnection() {
-        return connection;
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
+    }
+
+    public PersistenceListener getListener() {
+        return connectionProvider.getListener();
+    }
+
+    /**
+     * Observe statements and operations of the manager, see {@link PersistenceListener}.
+     */
+    public void setListener(PersistenceListener listener) {
+        connectionProvider.setListener(listener);
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return connectionProvider.getSlowQueryLog();
+    }
+
+    /**
+     * Report statements slower than the threshold of the log, <code>null</code> to disable it.
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        connectionProvider.setSlowQueryLog(slowQueryLog);
+    }
+
+    /**
+     * Prepare a statement on the connection leased by the current thread,
+     * see {@link ConnectionProvider#prepareStatement(String)}.
+     */
+    public CachedStatement prepareStatement(String sql) throws SQLException {
+        return connectionProvider.prepareStatement(sql);
+    }
+
+    public IdentityMap getIdentityMap() {
+        return identityMap;
+    }
+
+    /**
+     * Get an entity from the second-level cache of its type.
+     *
+     * @param snapshot persisted column values of the entity, remembered for dirty checking
+     * @return the entity registered in the identity map, or <code>null</code> if the type
+     * is not cached or the entity is not in the cache
+     */
+    public <T> T getCached(Class<T> type, long id, Function<T, Object[]> snapshot) {
+        Object[] row = cache.get(type, id);
+        if (row == null) {
+            return null;
+        }
+        T entity = EntityCache.fromRow(type, row, this::resolveReference);
+        T known = identityMap.putIfAbsent(type, id, entity);
+        if (known == entity) {
+            identityMap.setSnapshot(type, id, entity, snapshot.apply(entity));
+        }
+        return known;
+    }
+
+    /**
+     * Store a freshly loaded entity into the second-level cache of its type, if it is cached.
+     * Inside a transaction, the entity is stored when the transaction commits.
+     *
+     * @param generation {@link EntityCache#generation()} captured before the entity was loaded,
+     *                   the entity is not stored if its row was invalidated since
+     */
+    public void putCached(Class<?> type, long id, Object entity, long generation) {
+        cache.put(type, id, entity, generation);
+    }
+
+    public void invalidateCached(Class<?> type, long id) {
+        cache.invalidate(type, id);
+    }
+
+    /**
+     * Remember an entity inserted by a DAO, so that it is unsaved again if its transaction is rolled back,
+     * see {@link TransactionContext#recordInsert(Object)}.
+     */
+    public void recordInsert(Object entity) {
+        transactions.recordInsert(entity);
+    }
+
+    /**
+     * Create a lazy reference, loaded through this manager on first use.
+     * Entities without a generated lazy reference class get a runtime proxy.
+     */
+    public <T> T createProxy(Class<T> type, long id) throws InstantiationException, IllegalAccessException {
+        EntityDAO<T> dao = getDAO(type);
+        if (dao != null) {
+            return dao.getReference(id);
+        }
+        return ProxyManager.createProxy(this::loadProxied, identityMap, type, id);
+    }
+
+    private Object loadProxied(Class<?> type, long id) {
+        connectionProvider.getListener().lazyLoaded(type, id);
+        return getDAO(type).get(id).orElse(null);
+    }
+
+    private Object resolveReference(ColumnMetadata column, long id) {
+        if (column.getFetchType() == FetchType.LAZY) {
+            try {
+                return createProxy(column.getTargetEntity(), id);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new PersistenceException(e);
+            }
+        }
+        return getDAO(column.getTargetEntity()).get(id).orElse(null);
+    }
+
+    /**
+     * @return number of rows fetched at once by streams, 0 for the driver default
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
     }
 
     @Override
@@ -41,52 +217,172 @@ public class DAOPersistenceManager implements PersistenceManager {
 
     @Override
     public <T> Optional<T> get(Class<T> type, long id) {
-        return getDAO(type).get(id);
+        return Observations.observe(connectionProvider, Operation.GET, type,
+                () -> getDAO(type).get(id), entity -> entity.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public <T> Map<Long, T> getByIds(Class<T> type, Collection<Long> ids) {
+        return Observations.observe(connectionProvider, Operation.GET_BY_IDS, type,
+                () -> getDAO(type).getByIds(ids), Map::size);
     }
 
     @Override
     public <T> List<T> getAll(Class<T> type) {
-        return getDAO(type).getAll();
+        return Observations.observe(connectionProvider, Operation.GET_ALL, type,
+                () -> getDAO(type).getAll(), List::size);
     }
 
     @Override
     public <T> List<T> getBy(Class<T> type, String fieldName, Object value) {
-        return getDAO(type).getBy(fieldName, value);
+        return Observations.observe(connectionProvider, Operation.GET_BY, type,
+                () -> getDAO(type).getBy(fieldName, value), List::size);
+    }
+
+    @Override
+    public <T> Stream<T> streamAll(Class<T> type) {
+        return Observations.observeStream(connectionProvider, type, () -> getDAO(type).streamAll());
+    }
+
+    @Override
+    public <T> Stream<T> streamBy(Class<T> type, String fieldName, Object value) {
+        return Observations.observeStream(connectionProvider, type, () -> getDAO(type).streamBy(fieldName, value));
+    }
+
+    @Override
+    public <T> Page<T> page(Class<T> type, String column, String continuationToken, int limit) {
+        return Observations.observe(connectionProvider, Operation.PAGE, type,
+                () -> KeysetPagination.page(EntityMetadata.of(type), column, continuationToken, limit,
+                        (clause, parameters) -> getDAO(type).getWhere(new EntityQuery.Sql(null, clause, parameters))),
+                page -> page.getItems().size());
+    }
+
+    private EntityDAO<?> getDAO(Object entity) {
+        return getDAO(EntityMetadata.entityClass(entity.getClass()));
     }
 
     @Override
     public long save(Object entity) {
         // TODO: What if we would receive a Proxy?
         if(ProxyObject.class.isAssignableFrom(entity.getClass())){
+            return (long) ReflectionManager.getObjectPrimaryKey(entity);
+        }
+        return Observations.observe(connectionProvider, Operation.SAVE, EntityMetadata.entityClass(entity.getClass()),
+                () -> getDAO(entity).save(entity), id -> 1);
+    }
+
+    @Override
+    public void saveAll(Collection<?> entities) {
+        Map<Class<?>, List<Object>> entitiesByType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            if(!ProxyObject.class.isAssignableFrom(entity.getClass())){
+                entitiesByType.computeIfAbsent(EntityMetadata.entityClass(entity.getClass()), type -> new ArrayList<>())
+                        .add(entity);
+            }
+        }
+
+        Observations.observe(connectionProvider, Operation.SAVE_ALL, null, entities.size(), () -> {
             try {
-                return (long) ReflectionManager.getObjectPrimaryKey(entity);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+                atomically(() -> {
+                    for (Map.Entry<Class<?>, List<Object>> entry : entitiesByType.entrySet()) {
+                        getDAO(entry.getKey()).saveAll(entry.getValue());
+                    }
+                });
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
             }
+        });
+    }
+
+    /**
+     * Run the action atomically, in a savepoint of the running transaction of the thread,
+     * or in a transaction of its own if none is running.
+     */
+    public void atomically(SqlAction action) throws SQLException {
+        transactions.begin(Propagation.NESTED);
+        try {
+            action.run();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                transactions.rollback();
+            } catch (SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            throw e;
+        }
+        transactions.commit();
+    }
+
+    /**
+     * Execute a statement without results, e.g. DDL, on the connection leased by the current thread.
+     */
+    public void execute(String sql) throws SQLException {
+        try (CachedStatement cached = prepareStatement(sql)) {
+            cached.get().execute();
         }
-        return getDAO(entity.getClass()).save(entity);
     }
 
     @Override
     public void delete(Object entity) {
-        getDAO((entity.getClass())).delete(entity);
+        Observations.observe(connectionProvider, Operation.DELETE, EntityMetadata.entityClass(entity.getClass()), 1,
+                () -> getDAO(entity).delete(entity));
+    }
+
+    @Override
+    public void deleteAll(Collection<?> entities) {
+        Map<Class<?>, List<Object>> entitiesByType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            entitiesByType.computeIfAbsent(EntityMetadata.entityClass(entity.getClass()), type -> new ArrayList<>())
+                    .add(entity);
+        }
+        List<Class<?>> types = EntityMetadata.orderByDependencies(entitiesByType.keySet());
+        Collections.reverse(types);
+
+        Observations.observe(connectionProvider, Operation.DELETE_ALL, null, entities.size(), () -> {
+            try {
+                atomically(() -> {
+                    for (Class<?> type : types) {
+                        getDAO(type).deleteAll(entitiesByType.get(type));
+                    }
+                });
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
+            }
+        });
     }
 
     @Override
     public void startTransaction() throws SQLException {
-        connection.createStatement().execute("BEGIN TRANSACTION;");
-        System.out.println("Transaction was started.");
+        transactions.begin(Propagation.REQUIRED);
+    }
+
+    @Override
+    public void startTransaction(Propagation propagation) throws SQLException {
+        transactions.begin(propagation);
     }
 
     @Override
     public void commitTransaction() throws SQLException {
-        connection.createStatement().execute("COMMIT;");
-        System.out.println("Transaction was successful. COMMIT command was applied.");
+        transactions.commit();
     }
 
     @Override
     public void rollbackTransaction() throws SQLException {
-        connection.createStatement().execute("ROLLBACK;");
-        System.out.println("Transaction was unsuccessful. ROLLBACK command was applied.");
+        transactions.rollback();
+    }
+
+    /**
+     * Close the connection provider, if the manager created it.
+     */
+    @Override
+    public void close() {
+        if (!ownsConnectionProvider) {
+            return;
+        }
+        try {
+            connectionProvider.close();
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
     }
 }
@@ -0,0 +1,55 @@
+package sk.tuke.meta.persistence;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Finds columns changed since an entity was loaded or saved, so that <code>UPDATE</code>
+ * writes only those columns, or nothing at all.
+ * <p>
+ * Column values are compared as persisted: references by the id of the referenced entity.
+ * The snapshots are kept in the {@link IdentityMap} of the manager.
+ */
+public final class DirtyChecking {
+    private static final int[] NONE = new int[0];
+
+    private DirtyChecking() {
+    }
+
+    /**
+     * @param snapshot column values remembered for the entity, or <code>null</code> if unknown
+     * @param values   current column values, in the same order
+     * @return indexes of the changed columns, or <code>null</code> if all columns have to be written
+     */
+    public static int[] changedColumns(Object[] snapshot, Object[] values) {
+        if (snapshot == null || snapshot.length != values.length) {
+            return null;
+        }
+
+        int[] changed = NONE;
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Objects.deepEquals(snapshot[i], values[i])) {
+                if (count == changed.length) {
+                    changed = Arrays.copyOf(changed, Math.max(4, count * 2));
+                }
+                changed[count++] = i;
+            }
+        }
+        return count == changed.length ? changed : Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * @return <code>UPDATE</code> with parameters for the changed columns in the given order, followed by the id
+     */
+    public static String updateSql(String tableName, String idColumn, String[] columns, int[] changed) {
+        StringBuilder sql = new StringBuilder("UPDATE '").append(tableName).append("' SET ");
+        for (int i = 0; i < changed.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(columns[changed[i]]).append(" = ?");
+        }
+        return sql.append(" WHERE ").append(idColumn).append(" = ?").toString();
+    }
+}
@@ -0,0 +1,326 @@
+package sk.tuke.meta.persistence;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second-level cache of one entity type, shared by all managers and connections.
+ * <p>
+ * Entities are stored as rows of column values indexed like {@link EntityMetadata#getAllColumns()},
+ * with references stored as ids. Every hit therefore creates a new instance owned by the
+ * requesting manager and no instance is ever shared between managers.
+ * <p>
+ * Caching is enabled by {@link Cached} on the entity class or by {@link #enable}.
+ * Managers invalidate cached rows of entities they save or delete. Rows loaded or written
+ * inside a transaction are stored when it commits, a rollback invalidates only the rows it touched.
+ * <p>
+ * A row loaded before its id was invalidated may be outdated, so it is not stored. Loaders capture
+ * the {@link #generation()} before their query and pass it to {@link #put(long, Object[], long)}.
+ */
+public final class EntityCache {
+    private static final Map<Class<?>, Optional<EntityCache>> CACHES = new ConcurrentHashMap<>();
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final int STRIPES = 1024;
+
+    private final Cached.Eviction eviction;
+    private final int maxSize;
+    private final long expireAfterWriteNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    /**
+     * Generation of the latest invalidation of the ids of each stripe.
+     */
+    private final long[] invalidated = new long[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(Object[] row, long writtenAt) {
+    }
+
+    private EntityCache(Cached.Eviction eviction, int maxSize, long expireAfterWriteNanos) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximal size must be positive: " + maxSize);
+        }
+        this.eviction = eviction;
+        this.maxSize = maxSize;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.sketch = eviction == Cached.Eviction.TINY_LFU ? new FrequencySketch(maxSize) : null;
+    }
+
+    /**
+     * @return cache of the entity class, or <code>null</code> if the entity is not cached
+     */
+    public static EntityCache of(Class<?> type) {
+        Class<?> entityClass = EntityMetadata.entityClass(type);
+        return CACHES.computeIfAbsent(entityClass, EntityCache::fromAnnotation).orElse(null);
+    }
+
+    private static Optional<EntityCache> fromAnnotation(Class<?> type) {
+        Cached cached = type.getAnnotation(Cached.class);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new EntityCache(cached.eviction(), cached.maxSize(),
+                TimeUnit.SECONDS.toNanos(cached.expireAfterWriteSeconds())));
+    }
+
+    /**
+     * Enable caching of an entity, replacing the configuration of its {@link Cached} annotation.
+     *
+     * @param expireAfterWrite time after which a cached entity expires, 0 to never expire
+     */
+    public static EntityCache enable(Class<?> type, Cached.Eviction eviction, int maxSize,
+                                     long expireAfterWrite, TimeUnit unit) {
+        EntityCache cache = new EntityCache(eviction, maxSize, unit.toNanos(expireAfterWrite));
+        CACHES.put(EntityMetadata.entityClass(type), Optional.of(cache));
+        return cache;
+    }
+
+    public static void disable(Class<?> type) {
+        CACHES.put(EntityMetadata.entityClass(type), Optional.empty());
+    }
+
+    /**
+     * Empty the caches of all entities, e.g. after tables were changed without the managers.
+     */
+    public static void clearAll() {
+        for (Optional<EntityCache> cache : CACHES.values()) {
+            cache.ifPresent(EntityCache::clear);
+        }
+    }
+
+    /**
+     * @return generation of the latest invalidation of any cached row, to be captured before rows are loaded
+     */
+    public static long generation() {
+        return GENERATION.get();
+    }
+
+    private static int stripe(long id) {
+        return Long.hashCode(id) & (STRIPES - 1);
+    }
+
+    /**
+     * Create the cached row of a loaded or saved entity.
+     */
+    public static Object[] toRow(Object entity) {
+        ColumnMetadata[] columns = EntityMetadata.of(entity).getAllColumns();
+        Object[] row = new Object[columns.length];
+        for (ColumnMetadata column : columns) {
+            Object value = column.get(entity);
+            if (column.isManyToOne() && value != null) {
+                value = ProxyManager.getId(value);
+            }
+            row[column.getIndex()] = value;
+        }
+        return row;
+    }
+
+    /**
+     * Create a new entity from a cached row.
+     *
+     * @param references resolves ids of referenced entities
+     */
+    public static <T> T fromRow(Class<T> type, Object[] row, ReferenceResolver references) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+        Object[] values = row.clone();
+        for (ColumnMetadata column : metadata.getForeignKeys()) {
+            if (values[column.getIndex()] != null) {
+                values[column.getIndex()] = references.resolve(column, (Long) values[column.getIndex()]);
+            }
+        }
+        return type.cast(metadata.newInstance(values));
+    }
+
+    @FunctionalInterface
+    public interface ReferenceResolver {
+        Object resolve(ColumnMetadata column, long id);
+    }
+
+    /**
+     * @return the cached row, or <code>null</code> if it is missing or expired
+     */
+    public Object[] get(long id) {
+        lock.lock();
+        try {
+            if (sketch != null) {
+                sketch.increment(id);
+            }
+
+            Entry entry = entries.get(id);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(id);
+                evictions.increment();
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.row();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a row, unless the id was invalidated after it was loaded.
+     *
+     * @param generation {@link #generation()} captured before the row was loaded
+     * @return whether the row was stored
+     */
+    public boolean put(long id, Object[] row, long generation) {
+        lock.lock();
+        try {
+            if (invalidated[stripe(id)] > generation) {
+                // the row may have been written since it was loaded
+                return false;
+            }
+            puts.increment();
+            if (entries.containsKey(id) || entries.size() < maxSize) {
+                entries.put(id, new Entry(row, System.nanoTime()));
+                return true;
+            }
+
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            Map.Entry<Long, Entry> victim = eldest.next();
+            evictions.increment();
+            if (sketch != null && sketch.frequency(id) <= sketch.frequency(victim.getKey())) {
+                // the candidate is rejected, the victim stays
+                return false;
+            }
+            eldest.remove();
+            entries.put(id, new Entry(row, System.nanoTime()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(long id) {
+        lock.lock();
+        try {
+            entries.remove(id);
+            invalidated[stripe(id)] = GENERATION.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            Arrays.fill(invalidated, GENERATION.incrementAndGet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return expireAfterWriteNanos > 0 && System.nanoTime() - entry.writtenAt() >= expireAfterWriteNanos;
+    }
+
+    public Cached.Eviction getEviction() {
+        return eviction;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    /**
+     * @return number of entities evicted for size or expiration, including rejected candidates
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Approximate access frequencies of ids, a count-min sketch with 4-bit counters.
+     * All counters are halved periodically, so old popularity fades out.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize) * 2 - 1);
+            this.table = new byte[width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * maxSize;
+        }
+
+        private int index(long id, int row) {
+            long hash = (id + SEEDS[row]) * SEEDS[row];
+            return (int) (hash >>> 32) & mask;
+        }
+
+        int frequency(long id) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, table[index(id, row)]);
+            }
+            return frequency;
+        }
+
+        void increment(long id) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int i = index(id, row);
+                if (table[i] < 15) {
+                    table[i]++;
+                    added = true;
+                }
+            }
+
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy cursor over an open result set, mapping one chunk of rows at a time.
+ * <p>
+ * Each row is read as soon as the stream needs it, but the rows are completed in chunks
+ * of the fetch size, e.g. eager references of a whole chunk are loaded by one query per type.
+ * <p>
+ * The result set and its statement are released when the stream is closed
+ * or when the last row has been read.
+ */
+public class EntityCursor<R, T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+    /**
+     * Rows of a chunk when the fetch size is left to the driver.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 128;
+
+    @FunctionalInterface
+    public interface ChunkMapper<R, T> {
+        /**
+         * Complete the rows read for one chunk.
+         *
+         * @return entities of the rows, in their order
+         */
+        List<T> map(List<R> rows) throws SQLException;
+    }
+
+    private final CachedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<R> reader;
+    private final ChunkMapper<R, T> mapper;
+    private final int chunkSize;
+    private final Queue<T> chunk = new ArrayDeque<>();
+    private boolean closed;
+
+    private EntityCursor(CachedStatement statement, ResultSet resultSet, RowMapper<R> reader,
+                         ChunkMapper<R, T> mapper, int chunkSize) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.reader = reader;
+        this.mapper = mapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Execute the query of the statement and stream its rows. The statement is
+     * owned by the stream from now on, also if the execution fails.
+     *
+     * @param fetchSize number of rows fetched from the database at once, 0 for the driver default,
+     *                  also the number of rows mapped together
+     * @param reader    reads the current row
+     * @param mapper    completes the rows of one chunk
+     */
+    public static <R, T> Stream<T> stream(CachedStatement statement, int fetchSize, RowMapper<R> reader,
+                                          ChunkMapper<R, T> mapper) {
+        try {
+            statement.get().setFetchSize(fetchSize);
+            EntityCursor<R, T> cursor = new EntityCursor<>(statement, statement.get().executeQuery(), reader, mapper,
+                    fetchSize > 0 ? fetchSize : DEFAULT_CHUNK_SIZE);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException | RuntimeException e) {
+            try {
+                statement.close();
+            } catch (SQLException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e instanceof SQLException ? new PersistenceException(e) : (RuntimeException) e;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (chunk.isEmpty() && !closed) {
+            try {
+                List<R> rows = new ArrayList<>();
+                while (rows.size() < chunkSize && resultSet.next()) {
+                    rows.add(reader.map(resultSet));
+                }
+                if (rows.size() < chunkSize) {
+                    close();
+                }
+                chunk.addAll(mapper.map(rows));
+            } catch (SQLException e) {
+                throw closeAfter(new PersistenceException(e));
+            } catch (RuntimeException e) {
+                throw closeAfter(e);
+            }
+        }
+
+        T entity = chunk.poll();
+        if (entity == null) {
+            return false;
+        }
+        action.accept(entity);
+        return true;
+    }
+
+    /**
+     * Release the statement after a failure, so its connection lease is not kept by an abandoned stream.
+     */
+    private RuntimeException closeAfter(RuntimeException failure) {
+        try {
+            close();
+        } catch (RuntimeException closeException) {
+            failure.addSuppressed(closeException);
+        }
+        return failure;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try (statement; resultSet) {
+            // closed by try-with-resources
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
+}
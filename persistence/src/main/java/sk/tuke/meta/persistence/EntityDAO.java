@@ -1,18 +1,58 @@
 package sk.tuke.meta.persistence;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface EntityDAO<T> {
     void createTable();
 
     Optional<T> get(long id);
 
+    Map<Long, T> getByIds(Collection<Long> ids);
+
+    /**
+     * @return the known instance of the entity, or a lazy reference loaded on first use
+     */
+    T getReference(long id);
+
+    /**
+     * Load the entity referenced by a lazy reference on its first use.
+     */
+    Optional<T> loadReference(long id);
+
     List<T> getAll();
 
     List<T> getBy(String fieldName, Object value);
 
+    Stream<T> streamAll();
+
+    Stream<T> streamBy(String fieldName, Object value);
+
+    /**
+     * Select entities with SQL built by an {@link EntityQuery}.
+     */
+    List<T> getWhere(EntityQuery.Sql query);
+
+    /**
+     * Stream entities in chunks of the fetch size, as described in {@link #getWhere(EntityQuery.Sql)}.
+     */
+    Stream<T> streamWhere(EntityQuery.Sql query);
+
+    /**
+     * Select only the columns of the query, without hydrating entities.
+     *
+     * @param mapper maps the selected columns of a row
+     */
+    <R> List<R> select(EntityQuery.Sql query, RowMapper<R> mapper);
+
     long save(Object entity);
 
+    void saveAll(Collection<?> entities);
+
     void delete(Object entity);
+
+    void deleteAll(Collection<?> entities);
 }
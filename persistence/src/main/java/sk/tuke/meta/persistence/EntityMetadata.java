@@ -0,0 +1,525 @@
+package sk.tuke.meta.persistence;
+
+import javassist.util.proxy.ProxyObject;
+import sk.tuke.meta.persistence.exceptions.MissingAnnotationException;
+import sk.tuke.meta.persistence.exceptions.PrimaryKeyException;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.PersistenceException;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable mapping of an entity class to its table.
+ * <p>
+ * Metadata is validated and built once per class and shared by all managers,
+ * so annotations are not re-read on every persistence operation.
+ * <p>
+ * Entities are created by their public no-arg constructor and hydrated field by field. Records and classes
+ * without a no-arg constructor are immutable: they are created by a single call of the canonical or
+ * all-arguments constructor, which takes values of all instance fields in their declaration order.
+ */
+public final class EntityMetadata {
+    private static final ClassValue<EntityMetadata> REGISTRY = new ClassValue<>() {
+        @Override
+        protected EntityMetadata computeValue(Class<?> type) {
+            try {
+                return new EntityMetadata(type);
+            } catch (MissingAnnotationException | PrimaryKeyException | NoSuchMethodException e) {
+                throw new PersistenceException(e);
+            }
+        }
+    };
+
+    private final Class<?> type;
+    private final String tableName;
+    private final Constructor<?> constructor;
+    /**
+     * Column index of each constructor parameter of an immutable entity, -1 for transient fields,
+     * <code>null</code> if the entity has a no-arg constructor.
+     */
+    private final int[] parameterColumns;
+    private final Class<?>[] parameterTypes;
+    private final Object[] parameterDefaults;
+    private final ColumnMetadata idColumn;
+    private final List<ColumnMetadata> columns;
+    private final ColumnMetadata[] allColumns;
+    private final List<ColumnMetadata> foreignKeys;
+    private final Map<String, ColumnMetadata> columnsByName;
+    private final Map<String, ColumnMetadata> columnsByFieldName;
+
+    private final String selectAllSql;
+    private final String selectByIdSql;
+    private final String selectByIdsSql;
+    private final String insertSql;
+    private final BatchInserter batchInserter;
+    private final String updateSql;
+    private final String deleteSql;
+    private final String[] columnNames;
+    private final Map<String, ColumnMetadata> columnsByLowerCaseName;
+    private final String[][] selectBySql;
+
+    private EntityMetadata(Class<?> type) throws MissingAnnotationException, PrimaryKeyException, NoSuchMethodException {
+        entityAnnotationCheck(type);
+        idAnnotationCheck(type);
+
+        this.type = type;
+        this.tableName = tableName(type);
+        this.constructor = constructor(type);
+
+        ColumnMetadata id = null;
+        List<ColumnMetadata> allColumns = new ArrayList<>();
+        List<ColumnMetadata> columns = new ArrayList<>();
+        List<ColumnMetadata> foreignKeys = new ArrayList<>();
+        Map<String, ColumnMetadata> columnsByName = new HashMap<>();
+        Map<String, ColumnMetadata> columnsByFieldName = new HashMap<>();
+        Map<String, ColumnMetadata> columnsByLowerCaseName = new HashMap<>();
+        List<String[]> selectBySql = new ArrayList<>();
+
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(Transient.class)) {
+                continue;
+            }
+
+            ColumnMetadata column = new ColumnMetadata(field, allColumns.size(), field.isAnnotationPresent(Id.class));
+            allColumns.add(column);
+            if (column.isPrimaryKey()) {
+                id = column;
+            } else {
+                columns.add(column);
+            }
+
+            if (column.isManyToOne()) {
+                entityAnnotationCheck(column.getTargetEntity());
+                idAnnotationCheck(column.getTargetEntity());
+                foreignKeys.add(column);
+            }
+
+            columnsByName.put(column.getName(), column);
+            columnsByFieldName.put(column.getFieldName(), column);
+            columnsByLowerCaseName.put(column.getName().toLowerCase(Locale.ROOT), column);
+            selectBySql.add(new String[]{
+                    String.format("SELECT * FROM '%s' WHERE %s = ?", tableName, column.getName()),
+                    String.format("SELECT * FROM '%s' WHERE %s is ?", tableName, column.getName())});
+        }
+
+        this.idColumn = id;
+        this.columns = Collections.unmodifiableList(columns);
+        this.allColumns = allColumns.toArray(new ColumnMetadata[0]);
+        this.foreignKeys = Collections.unmodifiableList(foreignKeys);
+        this.columnsByName = Collections.unmodifiableMap(columnsByName);
+        this.columnsByFieldName = Collections.unmodifiableMap(columnsByFieldName);
+        this.columnsByLowerCaseName = Collections.unmodifiableMap(columnsByLowerCaseName);
+        this.selectBySql = selectBySql.toArray(new String[0][]);
+
+        this.parameterTypes = constructor.getParameterTypes();
+        if (parameterTypes.length == 0) {
+            this.parameterColumns = null;
+            this.parameterDefaults = null;
+        } else {
+            List<String> parameterNames = constructorParameterNames(type);
+            this.parameterColumns = new int[parameterTypes.length];
+            this.parameterDefaults = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                ColumnMetadata column = columnsByFieldName.get(parameterNames.get(i));
+                parameterColumns[i] = column == null ? -1 : column.getIndex();
+                parameterDefaults[i] = parameterTypes[i].isPrimitive()
+                        ? Array.get(Array.newInstance(parameterTypes[i], 1), 0) : null;
+            }
+        }
+
+        List<String> columnNames = columns.stream().map(ColumnMetadata::getName).toList();
+        this.columnNames = columnNames.toArray(new String[0]);
+        this.selectAllSql = String.format("SELECT * FROM '%s'", tableName);
+        this.selectByIdSql = String.format("SELECT * FROM '%s' WHERE %s = ?", tableName, idColumn.getName());
+        this.selectByIdsSql = String.format("SELECT * FROM '%s' WHERE %s IN ", tableName, idColumn.getName());
+        this.insertSql = String.format("INSERT INTO '%s' (%s) VALUES (%s)", tableName,
+                String.join(",", columnNames),
+                String.join(",", Collections.nCopies(columnNames.size(), "?")));
+        this.batchInserter = new BatchInserter(tableName, this.columnNames, idColumn.getName());
+        this.updateSql = String.format("UPDATE '%s' SET %s WHERE %s = ?", tableName,
+                String.join(",", columnNames.stream().map(name -> name + " = ?").toList()),
+                idColumn.getName());
+        this.deleteSql = String.format("DELETE FROM '%s' WHERE %s = ?", tableName, idColumn.getName());
+    }
+
+    /**
+     * Get metadata of an entity class. Proxy and lazy reference classes are resolved to the referenced entity.
+     *
+     * @throws PersistenceException if the class is not a valid entity
+     */
+    public static EntityMetadata of(Class<?> type) {
+        return REGISTRY.get(entityClass(type));
+    }
+
+    public static EntityMetadata of(Object entity) {
+        return of(entity.getClass());
+    }
+
+    static Class<?> entityClass(Class<?> type) {
+        if (ProxyObject.class.isAssignableFrom(type) || LazyReference.class.isAssignableFrom(type)) {
+            return type.getSuperclass();
+        }
+        return type;
+    }
+
+    /**
+     * Order entity classes so that each class comes after the classes it references by <code>@ManyToOne</code>,
+     * which is the order to insert rows in. Cyclic references are broken arbitrarily.
+     */
+    public static List<Class<?>> orderByDependencies(Collection<Class<?>> types) {
+        Set<Class<?>> included = new HashSet<>();
+        for (Class<?> type : types) {
+            included.add(entityClass(type));
+        }
+        Set<Class<?>> visited = new HashSet<>();
+        List<Class<?>> ordered = new ArrayList<>();
+        for (Class<?> type : types) {
+            visit(entityClass(type), included, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(Class<?> type, Set<Class<?>> included, Set<Class<?>> visited, List<Class<?>> ordered) {
+        if (!visited.add(type)) {
+            return;
+        }
+        for (ColumnMetadata column : of(type).getForeignKeys()) {
+            if (included.contains(column.getTargetEntity())) {
+                visit(column.getTargetEntity(), included, visited, ordered);
+            }
+        }
+        ordered.add(type);
+    }
+
+    /**
+     * @return the entities without an id and the entities without an id they reference,
+     * which are inserted together with them
+     */
+    public static List<Object> unsaved(Collection<?> entities) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Object> unsaved = new ArrayList<>();
+        List<Object> pending = new ArrayList<>(entities);
+        while (!pending.isEmpty()) {
+            Object entity = pending.remove(pending.size() - 1);
+            if (!seen.add(entity) || ProxyManager.getId(entity) != 0) {
+                continue;
+            }
+            unsaved.add(entity);
+            for (ColumnMetadata column : of(entity).getForeignKeys()) {
+                Object reference = column.get(entity);
+                if (reference != null) {
+                    pending.add(reference);
+                }
+            }
+        }
+        return unsaved;
+    }
+
+    /**
+     * Mark entities as unsaved again, e.g. after their inserts were rolled back.
+     * Immutable entities are skipped, their ids are never assigned and the identity map
+     * forgets their inserts with the rolled back transaction or savepoint.
+     */
+    public static void resetIds(Collection<?> entities) {
+        for (Object entity : entities) {
+            EntityMetadata metadata = of(entity);
+            if (!metadata.isImmutable()) {
+                metadata.setId(entity, 0);
+            }
+        }
+    }
+
+    /**
+     * Check that an unsaved entity can be inserted as a reference of another entity.
+     *
+     * @throws PersistenceException if the entity is immutable, so the reference could not get its id
+     */
+    public static void checkUnsavedReference(Object reference) {
+        if (of(reference).isImmutable()) {
+            throw new PersistenceException("Immutable entity " + reference.getClass().getSimpleName()
+                    + " must be saved before it is referenced.");
+        }
+    }
+
+    /**
+     * @return the canonical constructor of a record, otherwise the no-arg constructor or, if there is none,
+     * the constructor taking all instance fields in their declaration order
+     */
+    private static Constructor<?> constructor(Class<?> type) throws NoSuchMethodException {
+        if (!type.isRecord()) {
+            try {
+                return type.getConstructor();
+            } catch (NoSuchMethodException e) {
+                try {
+                    return type.getConstructor(instanceFields(type).stream().map(Field::getType).toArray(Class<?>[]::new));
+                } catch (NoSuchMethodException ignored) {
+                    throw e;
+                }
+            }
+        }
+        return type.getConstructor(Arrays.stream(type.getRecordComponents())
+                .map(RecordComponent::getType).toArray(Class<?>[]::new));
+    }
+
+    private static List<String> constructorParameterNames(Class<?> type) {
+        if (type.isRecord()) {
+            return Arrays.stream(type.getRecordComponents()).map(RecordComponent::getName).toList();
+        }
+        return instanceFields(type).stream().map(Field::getName).toList();
+    }
+
+    private static List<Field> instanceFields(Class<?> type) {
+        return Arrays.stream(type.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .toList();
+    }
+
+    private static String tableName(Class<?> type) {
+        Table table = type.getAnnotation(Table.class);
+        if (table != null && table.name().length() > 0) {
+            return table.name();
+        }
+        return type.getSimpleName();
+    }
+
+    private static void entityAnnotationCheck(Class<?> objectClass) throws MissingAnnotationException {
+        if (objectClass.getAnnotation(Entity.class) != null) {
+            return;
+        }
+        throw new MissingAnnotationException(objectClass.getName() + " does not have Entity annotation.");
+    }
+
+    private static void idAnnotationCheck(Class<?> objectClass) throws PrimaryKeyException {
+        Field idField = null;
+        for (Field field : objectClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Id.class)) {
+                idField = field;
+                break;
+            }
+        }
+
+        if (idField == null) {
+            throw new PrimaryKeyException("Entity (" + objectClass.getName() +
+                    ") does not have field with Id annotation.");
+        }
+
+        if (idField.getType() != long.class) {
+            throw new PrimaryKeyException("Field (" + idField.getName() + ") with Id annotation must be long.");
+        }
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public ColumnMetadata getIdColumn() {
+        return idColumn;
+    }
+
+    /**
+     * @return all persistent columns except the primary key, in declaration order
+     */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return all persistent columns including the primary key, indexed by {@link ColumnMetadata#getIndex()}.
+     * The returned array is shared and must not be modified.
+     */
+    public ColumnMetadata[] getAllColumns() {
+        return allColumns;
+    }
+
+    /**
+     * @return columns mapped by <code>@ManyToOne</code> references
+     */
+    public List<ColumnMetadata> getForeignKeys() {
+        return foreignKeys;
+    }
+
+    /**
+     * @return the column with given column name, or <code>null</code> if there is no such column
+     */
+    public ColumnMetadata getColumn(String name) {
+        return columnsByName.get(name);
+    }
+
+    /**
+     * @return the column mapped by the field with given name, or <code>null</code> if there is no such column
+     */
+    public ColumnMetadata getColumnByFieldName(String fieldName) {
+        return columnsByFieldName.get(fieldName);
+    }
+
+    /**
+     * @param name name of the column, in any case
+     * @throws PersistenceException if the entity has no such column
+     */
+    public ColumnMetadata requireColumn(String name) {
+        ColumnMetadata column = columnsByLowerCaseName.get(name.toLowerCase(Locale.ROOT));
+        if (column == null) {
+            throw new PersistenceException("Entity " + type.getSimpleName() + " has no column " + name + ".");
+        }
+        return column;
+    }
+
+    /**
+     * @param column name of the column, in any case
+     * @param value  value the column is compared with
+     * @return <code>SELECT</code> of rows with given value in the column, with the value as its only parameter
+     * @throws PersistenceException if the entity has no such column
+     */
+    public String getSelectBySql(String column, Object value) {
+        String[] sql = selectBySql[requireColumn(column).getIndex()];
+        return value == null ? sql[1] : sql[0];
+    }
+
+    public String getSelectAllSql() {
+        return selectAllSql;
+    }
+
+    public String getSelectByIdSql() {
+        return selectByIdSql;
+    }
+
+    /**
+     * @return <code>SELECT</code> by ids without the parameter list, see {@link BatchLoader}
+     */
+    public String getSelectByIdsSql() {
+        return selectByIdsSql;
+    }
+
+    /**
+     * @return <code>INSERT</code> with parameters for all columns except the primary key, in {@link #getColumns()} order
+     */
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    /**
+     * @return inserter of many rows, binding parameters in {@link #getColumns()} order
+     */
+    public BatchInserter getBatchInserter() {
+        return batchInserter;
+    }
+
+    /**
+     * @return <code>UPDATE</code> with parameters for all columns in {@link #getColumns()} order, followed by the id
+     */
+    public String getUpdateSql() {
+        return updateSql;
+    }
+
+    /**
+     * @param changed indexes of the changed columns in {@link #getColumns()}
+     * @see DirtyChecking#updateSql(String, String, String[], int[])
+     */
+    public String getUpdateSql(int[] changed) {
+        return DirtyChecking.updateSql(tableName, idColumn.getName(), columnNames, changed);
+    }
+
+    /**
+     * @return values of {@link #getColumns()} as persisted, references replaced by their ids
+     */
+    public Object[] snapshot(Object entity) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnMetadata column = columns.get(i);
+            Object value = column.get(entity);
+            if (column.isManyToOne() && value != null) {
+                value = ProxyManager.getId(value);
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    public String getDeleteSql() {
+        return deleteSql;
+    }
+
+    public long getId(Object entity) {
+        return idColumn.getLong(entity);
+    }
+
+    public void setId(Object entity, long id) {
+        idColumn.setLong(entity, id);
+    }
+
+    /**
+     * @return whether the entity is a record or has no no-arg constructor, so it is created
+     * by {@link #newInstance(Object[])} and its id is not assigned when it is inserted
+     */
+    public boolean isImmutable() {
+        return parameterColumns != null;
+    }
+
+    /**
+     * @throws PersistenceException if the entity is immutable
+     */
+    public Object newInstance() {
+        if (isImmutable()) {
+            throw new PersistenceException("Immutable entity " + type.getSimpleName()
+                    + " must be created with values of its columns.");
+        }
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Create an entity by a single constructor call.
+     *
+     * @param values values of {@link #getAllColumns()} by their index, references already resolved to entities;
+     *               numbers are converted to the field types, <code>null</code> primitives are set to defaults
+     */
+    public Object newInstance(Object[] values) {
+        if (!isImmutable()) {
+            Object entity = newInstance();
+            for (ColumnMetadata column : allColumns) {
+                column.set(entity, values[column.getIndex()]);
+            }
+            return entity;
+        }
+        Object[] arguments = new Object[parameterColumns.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Object value = parameterColumns[i] < 0 ? null : values[parameterColumns[i]];
+            if (value instanceof Number number) {
+                value = ColumnMetadata.convertNumber(number, parameterTypes[i]);
+            }
+            arguments[i] = value == null ? parameterDefaults[i] : value;
+        }
+        try {
+            return constructor.newInstance(arguments);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new PersistenceException(e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package sk.tuke.meta.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Query of entities of type <code>T</code> built from {@link QueryField} conditions, executed by SQLite.
+ * <p>
+ * Conditions, orders and paging are rendered to SQL with <code>?</code> parameters only, so every query
+ * of the same shape runs the same prepared statement from the statement cache, whatever the values are.
+ * A query can be executed repeatedly, it is used by a single thread.
+ * <p>
+ * Besides whole entities, a query can select only the values of some fields, see {@link #select(QueryField[])}.
+ */
+public class EntityQuery<T> {
+    private static final String PAGING = " LIMIT ? OFFSET ?";
+
+    private final EntityDAO<T> dao;
+    private final List<Condition<T>> conditions = new ArrayList<>();
+    private final List<Order<T>> orders = new ArrayList<>();
+    private long limit = -1;
+    private long offset;
+    private String clause;
+
+    /**
+     * Condition of a query, see {@link QueryField}.
+     */
+    public static final class Condition<T> {
+        private final String sql;
+        private final List<Object> parameters;
+
+        Condition(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @SafeVarargs
+        public static <T> Condition<T> and(Condition<T>... conditions) {
+            return join(" AND ", conditions);
+        }
+
+        @SafeVarargs
+        public static <T> Condition<T> or(Condition<T>... conditions) {
+            return join(" OR ", conditions);
+        }
+
+        public static <T> Condition<T> not(Condition<T> condition) {
+            return new Condition<>("NOT (" + condition.sql + ")", condition.parameters);
+        }
+
+        @SafeVarargs
+        private static <T> Condition<T> join(String operator, Condition<T>... conditions) {
+            if (conditions.length == 0) {
+                throw new IllegalArgumentException("At least one condition is required.");
+            }
+            List<Object> parameters = new ArrayList<>();
+            StringBuilder sql = new StringBuilder("(");
+            for (Condition<T> condition : conditions) {
+                if (sql.length() > 1) {
+                    sql.append(operator);
+                }
+                sql.append(condition.sql);
+                parameters.addAll(condition.parameters);
+            }
+            return new Condition<>(sql.append(')').toString(), parameters);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return Collections.unmodifiableList(parameters);
+        }
+    }
+
+    /**
+     * SQL of a query, rendered only from generated {@link QueryField} columns and <code>?</code> parameters.
+     * It cannot be created outside this package, so no other SQL reaches {@link EntityDAO#getWhere(Sql)}.
+     */
+    public static final class Sql {
+        private final String columns;
+        private final String clause;
+        private final List<Object> parameters;
+
+        Sql(String columns, String clause, List<Object> parameters) {
+            this.columns = columns;
+            this.clause = clause;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return comma separated selected columns, <code>null</code> when whole entities are selected
+         */
+        public String getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return SQL following <code>FROM</code> of the entity table
+         */
+        public String getClause() {
+            return clause;
+        }
+
+        /**
+         * @return values bound to the <code>?</code> parameters of the clause
+         */
+        public List<Object> getParameters() {
+            return Collections.unmodifiableList(parameters);
+        }
+    }
+
+    /**
+     * Sort order of a query, see {@link QueryField#asc()} and {@link QueryField#desc()}.
+     */
+    public static final class Order<T> {
+        private final String sql;
+
+        Order(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    /**
+     * Maps three selected values, see {@link #select(QueryField, QueryField, QueryField, Mapper3)}.
+     */
+    @FunctionalInterface
+    public interface Mapper3<A, B, C, R> {
+        R map(A first, B second, C third);
+    }
+
+    public EntityQuery(EntityDAO<T> dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Add conditions all returned entities must match.
+     */
+    @SafeVarargs
+    public final EntityQuery<T> where(Condition<T>... conditions) {
+        Collections.addAll(this.conditions, conditions);
+        clause = null;
+        return this;
+    }
+
+    /**
+     * Add sort orders, applied in the order they were added.
+     */
+    @SafeVarargs
+    public final EntityQuery<T> orderBy(Order<T>... orders) {
+        Collections.addAll(this.orders, orders);
+        clause = null;
+        return this;
+    }
+
+    /**
+     * @param limit maximum number of returned entities, negative for no limit
+     */
+    public EntityQuery<T> limit(long limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @param offset number of matching entities to skip
+     */
+    public EntityQuery<T> offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public List<T> list() {
+        return dao.getWhere(new Sql(null, getClause(), getParameters(limit)));
+    }
+
+    /**
+     * Stream matching entities in chunks of the fetch size. The stream must be closed.
+     */
+    public Stream<T> stream() {
+        return dao.streamWhere(new Sql(null, getClause(), getParameters(limit)));
+    }
+
+    public Optional<T> first() {
+        List<T> list = dao.getWhere(new Sql(null, getClause(), getParameters(limit == 0 ? 0 : 1)));
+        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }
+
+    /**
+     * Select only the values of given fields. Entities are not hydrated and references are not loaded,
+     * a reference field selects the id of the referenced entity.
+     *
+     * @return values of the fields in their order, one row per matching entity
+     */
+    @SafeVarargs
+    public final List<Object[]> select(QueryField<T, ?>... fields) {
+        String columns = Stream.of(fields).map(QueryField::getColumn).collect(Collectors.joining(", "));
+        return dao.select(selection(columns), resultSet -> {
+            Object[] row = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                row[i] = fields[i].read(resultSet, i + 1);
+            }
+            return row;
+        });
+    }
+
+    /**
+     * Select the value of one field, as described in {@link #select(QueryField[])}, and map it e.g. to a DTO.
+     */
+    public <A, R> List<R> select(QueryField<T, A> field, Function<? super A, ? extends R> mapper) {
+        return dao.select(selection(field.getColumn()),
+                resultSet -> mapper.apply(field.read(resultSet, 1)));
+    }
+
+    /**
+     * Select values of two fields, as described in {@link #select(QueryField[])}, and map them e.g. to a record.
+     */
+    public <A, B, R> List<R> select(QueryField<T, A> first, QueryField<T, B> second,
+                                    BiFunction<? super A, ? super B, ? extends R> mapper) {
+        return dao.select(selection(first.getColumn() + ", " + second.getColumn()),
+                resultSet -> mapper.apply(first.read(resultSet, 1), second.read(resultSet, 2)));
+    }
+
+    /**
+     * Select values of three fields, as described in {@link #select(QueryField[])}, and map them e.g. to a record.
+     */
+    public <A, B, C, R> List<R> select(QueryField<T, A> first, QueryField<T, B> second, QueryField<T, C> third,
+                                       Mapper3<? super A, ? super B, ? super C, ? extends R> mapper) {
+        return dao.select(selection(first.getColumn() + ", " + second.getColumn() + ", " + third.getColumn()),
+                resultSet -> mapper.map(first.read(resultSet, 1), second.read(resultSet, 2), third.read(resultSet, 3)));
+    }
+
+    private Sql selection(String columns) {
+        return new Sql(columns, getClause(), getParameters(limit));
+    }
+
+    /**
+     * @return SQL following <code>FROM</code> of the query, see {@link Sql#getClause()}
+     */
+    public String getClause() {
+        if (clause == null) {
+            StringBuilder sql = new StringBuilder();
+            if (!conditions.isEmpty()) {
+                sql.append(" WHERE ").append(conditions.stream()
+                        .map(Condition::getSql)
+                        .collect(Collectors.joining(" AND ")));
+            }
+            if (!orders.isEmpty()) {
+                sql.append(" ORDER BY ").append(orders.stream()
+                        .map(Order::getSql)
+                        .collect(Collectors.joining(", ")));
+            }
+            clause = sql.append(PAGING).toString();
+        }
+        return clause;
+    }
+
+    private List<Object> getParameters(long limit) {
+        List<Object> parameters = new ArrayList<>();
+        for (Condition<T> condition : conditions) {
+            parameters.addAll(condition.parameters);
+        }
+        parameters.add(limit);
+        parameters.add(offset);
+        return parameters;
+    }
+}
@@ -0,0 +1,41 @@
+package sk.tuke.meta.persistence;
+
+/**
+ * Access to one entity field, created for each column by {@link ColumnMetadata}.
+ * <p>
+ * Typed methods neither box nor unbox. They may only be called for fields of that type,
+ * {@link #get} and {@link #set} work for all fields.
+ */
+interface FieldAccessor {
+    Object get(Object entity);
+
+    void set(Object entity, Object value);
+
+    long getLong(Object entity);
+
+    void setLong(Object entity, long value);
+
+    int getInt(Object entity);
+
+    void setInt(Object entity, int value);
+
+    double getDouble(Object entity);
+
+    void setDouble(Object entity, double value);
+
+    boolean getBoolean(Object entity);
+
+    void setBoolean(Object entity, boolean value);
+
+    float getFloat(Object entity);
+
+    void setFloat(Object entity, float value);
+
+    short getShort(Object entity);
+
+    void setShort(Object entity, short value);
+
+    byte getByte(Object entity);
+
+    void setByte(Object entity, byte value);
+}
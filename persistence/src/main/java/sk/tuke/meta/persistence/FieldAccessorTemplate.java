@@ -0,0 +1,105 @@
+package sk.tuke.meta.persistence;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bytecode of the {@link FieldAccessor} of each column. This class is never loaded itself,
+ * a hidden class is defined from it for every field, with the {@link VarHandle} of the field
+ * as its class data.
+ * <p>
+ * The handle is then a <code>static final</code> constant of its own class, which the JIT
+ * folds into a plain field access, unlike a handle read from a field of the column.
+ */
+final class FieldAccessorTemplate implements FieldAccessor {
+    private static final VarHandle HANDLE;
+
+    static {
+        try {
+            HANDLE = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, VarHandle.class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public Object get(Object entity) {
+        return HANDLE.get(entity);
+    }
+
+    @Override
+    public void set(Object entity, Object value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public long getLong(Object entity) {
+        return (long) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setLong(Object entity, long value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public int getInt(Object entity) {
+        return (int) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setInt(Object entity, int value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public double getDouble(Object entity) {
+        return (double) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setDouble(Object entity, double value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public boolean getBoolean(Object entity) {
+        return (boolean) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setBoolean(Object entity, boolean value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public float getFloat(Object entity) {
+        return (float) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setFloat(Object entity, float value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public short getShort(Object entity) {
+        return (short) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setShort(Object entity, short value) {
+        HANDLE.set(entity, value);
+    }
+
+    @Override
+    public byte getByte(Object entity) {
+        return (byte) HANDLE.get(entity);
+    }
+
+    @Override
+    public void setByte(Object entity, byte value) {
+        HANDLE.set(entity, value);
+    }
+}
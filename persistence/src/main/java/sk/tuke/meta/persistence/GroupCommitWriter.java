@@ -0,0 +1,227 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Write-behind mode of a {@link DAOPersistenceManager}.
+ * <p>
+ * Writes of many threads are queued and a single writer thread commits them in batches,
+ * one transaction per batch (group commit). SQLite then syncs the database once per batch
+ * instead of once per write, and writers never compete for the database lock.
+ * <p>
+ * If a batch fails, it is rolled back and its writes are retried one by one,
+ * so a single failing write does not fail the others.
+ * Futures are completed by the writer thread, dependent stages should not block.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Durability of committed batches, the SQLite <code>synchronous</code> setting of the writer connection.
+     */
+    public enum Durability {
+        /**
+         * A committed batch survives a power loss.
+         */
+        FULL,
+        /**
+         * In WAL mode, the last batches may be lost on a power loss, but the database stays consistent.
+         */
+        NORMAL,
+        /**
+         * The database is not synced at all, it may be corrupted by a power loss.
+         */
+        OFF
+    }
+
+    private final DAOPersistenceManager manager;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Write> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private static final class Write {
+        private final Object entity;
+        private final ToLongFunction<PersistenceManager> operation;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private Write(Object entity, ToLongFunction<PersistenceManager> operation) {
+            this.entity = entity;
+            this.operation = operation;
+        }
+    }
+
+    public GroupCommitWriter(DAOPersistenceManager manager) {
+        this(manager, DEFAULT_MAX_BATCH_SIZE, 0, Durability.FULL);
+    }
+
+    /**
+     * @param maxBatchSize maximum number of writes committed in one transaction
+     * @param lingerMillis how long to wait for more writes before committing a batch that is not full,
+     *                     0 to commit whatever is queued right away
+     * @param durability   <code>synchronous</code> setting applied to the writer connection
+     */
+    public GroupCommitWriter(DAOPersistenceManager manager, int maxBatchSize, long lingerMillis,
+                             Durability durability) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+        this.manager = manager;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.queue = new LinkedBlockingQueue<>(maxBatchSize * 16);
+
+        try {
+            manager.execute("PRAGMA synchronous = " + durability.name());
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+
+        this.writer = new Thread(this::run, "persistence-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue the entity to be saved.
+     *
+     * @return future completed with the primary key once the batch of the write is committed
+     * @see PersistenceManager#save(Object)
+     */
+    public CompletableFuture<Long> save(Object entity) {
+        return submit(new Write(entity, manager -> manager.save(entity)));
+    }
+
+    /**
+     * Queue the entity to be deleted.
+     *
+     * @return future completed once the batch of the write is committed
+     * @see PersistenceManager#delete(Object)
+     */
+    public CompletableFuture<Void> delete(Object entity) {
+        return submit(new Write(entity, manager -> {
+            manager.delete(entity);
+            return 0;
+        })).thenApply(id -> null);
+    }
+
+    /**
+     * @return future completed once all writes queued so far are committed
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(new Write(null, manager -> 0)).thenApply(id -> null);
+    }
+
+    private CompletableFuture<Long> submit(Write write) {
+        if (closed) {
+            write.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed."));
+            return write.result;
+        }
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.result.completeExceptionally(e);
+            return write.result;
+        }
+        // The writer may have stopped in the meantime, it exits only when closed and the queue is empty
+        if (closed && queue.remove(write)) {
+            write.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed."));
+        }
+        return write.result;
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Write first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(batch);
+            for (Write write : batch) {
+                write.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void fill(List<Write> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<Write> batch) {
+        long[] ids = new long[batch.size()];
+        List<Object> entities = new ArrayList<>();
+        for (Write write : batch) {
+            if (write.entity != null) {
+                entities.add(write.entity);
+            }
+        }
+        List<Object> unsaved = EntityMetadata.unsaved(entities);
+        try {
+            manager.atomically(() -> {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = batch.get(i).operation.applyAsLong(manager);
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            // Ids assigned by the rolled back inserts do not exist, the entities are unsaved again
+            EntityMetadata.resetIds(unsaved);
+            if (batch.size() == 1) {
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            for (Write write : batch) {
+                commit(List.of(write));
+            }
+            return;
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            batch.get(i).result.complete(ids[i]);
+        }
+    }
+
+    /**
+     * Stop accepting writes, commit the queued ones and stop the writer thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * First-level cache of one persistence manager, mapping <code>(entity class, id)</code>
+ * to the single instance representing that row.
+ * <p>
+ * Loaded entities and lazy proxies are kept apart, so a proxy is never returned
+ * where a loaded entity is expected. Instances are weakly referenced and disappear
+ * from the map once the application no longer uses them.
+ * <p>
+ * Each loaded entity may carry a snapshot of its persisted column values, see {@link DirtyChecking}.
+ * Immutable entities cannot hold the id they got when inserted, so the map remembers it for them.
+ * <p>
+ * A transaction has its own instances, registered only for the thread running it, so other threads
+ * never see changes which are not committed. Instances saved by the transaction are shared when it commits.
+ * <p>
+ * Outside transactions all threads of the manager get the same instances, which the map does not guard.
+ * A thread changing an entity must either load it in a transaction, which gets instances of its own,
+ * or synchronize with the other threads using it.
+ */
+public class IdentityMap {
+    private final Scope shared = new Scope();
+    private final ThreadLocal<Scope> transactions = new ThreadLocal<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    private record Key(Class<?> type, long id) {
+    }
+
+    private static final class Entry extends WeakReference<Object> {
+        private final Key key;
+        private final Map<Key, Entry> map;
+        private volatile Object[] snapshot;
+
+        private Entry(Key key, Object entity, Map<Key, Entry> map, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.key = key;
+            this.map = map;
+        }
+    }
+
+    /**
+     * Weak key of an inserted immutable entity, compared by identity, as records equal
+     * by their values may still be separate rows.
+     */
+    private static final class Instance extends WeakReference<Object> {
+        private final int hash;
+        private final Map<Instance, Long> map;
+
+        private Instance(Object entity, Map<Instance, Long> map, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+            this.map = map;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || other instanceof Instance instance && get() != null && get() == instance.get();
+        }
+    }
+
+    private static final class Scope {
+        private final Map<Key, Entry> entities = new ConcurrentHashMap<>();
+        private final Map<Key, Entry> proxies = new ConcurrentHashMap<>();
+        private final Map<Instance, Long> inserted = new ConcurrentHashMap<>();
+        /**
+         * Rows saved or deleted by a transaction, published when it commits.
+         */
+        private final Set<Key> written = new HashSet<>();
+    }
+
+    private static Key key(Class<?> type, long id) {
+        return new Key(EntityMetadata.entityClass(type), id);
+    }
+
+    /**
+     * Give the transaction just started by the current thread its own instances.
+     */
+    public void begin() {
+        transactions.set(new Scope());
+    }
+
+    /**
+     * Share the instances saved by the transaction the current thread has committed.
+     */
+    public void commit() {
+        Scope transaction = transactions.get();
+        if (transaction == null) {
+            return;
+        }
+        transactions.remove();
+        for (Key key : transaction.written) {
+            Entry entry = transaction.entities.get(key);
+            Object entity = entry == null ? null : entry.get();
+            if (entity == null) {
+                shared.entities.remove(key);
+                shared.proxies.remove(key);
+            } else {
+                Entry published = new Entry(key, entity, shared.entities, queue);
+                published.snapshot = entry.snapshot;
+                shared.entities.put(key, published);
+            }
+        }
+        transaction.inserted.forEach((instance, id) -> {
+            Object entity = instance.get();
+            if (entity != null) {
+                shared.inserted.put(new Instance(entity, shared.inserted, queue), id);
+            }
+        });
+    }
+
+    /**
+     * Forget the instances of the transaction the current thread has rolled back.
+     */
+    public void rollback() {
+        transactions.remove();
+    }
+
+    /**
+     * @return the loaded entity, or <code>null</code> if it is not in the map
+     */
+    public <T> T get(Class<T> type, long id) {
+        expunge();
+        Entry entry = scope().entities.get(key(type, id));
+        return entry == null ? null : type.cast(entry.get());
+    }
+
+    /**
+     * Register a loaded or saved entity, replacing any previous instance.
+     */
+    public void put(Class<?> type, long id, Object entity) {
+        expunge();
+        Key key = key(type, id);
+        Scope scope = scope();
+        scope.entities.put(key, new Entry(key, entity, scope.entities, queue));
+        if (scope != shared) {
+            scope.written.add(key);
+        }
+    }
+
+    /**
+     * Register a freshly loaded entity unless another instance of the same row is already known.
+     *
+     * @return the instance to be used by the application
+     */
+    public <T> T putIfAbsent(Class<T> type, long id, T entity) {
+        expunge();
+        Key key = key(type, id);
+        Scope scope = scope();
+        Entry created = new Entry(key, entity, scope.entities, queue);
+        while (true) {
+            Entry entry = scope.entities.putIfAbsent(key, created);
+            if (entry == null) {
+                return entity;
+            }
+            Object existing = entry.get();
+            if (existing != null) {
+                return type.cast(existing);
+            }
+            scope.entities.remove(key, entry);
+        }
+    }
+
+    /**
+     * @return the entity if loaded, otherwise the proxy registered for the row, or <code>null</code>
+     */
+    public <T> T getReference(Class<T> type, long id) {
+        T entity = get(type, id);
+        if (entity != null) {
+            return entity;
+        }
+        Entry entry = scope().proxies.get(key(type, id));
+        return entry == null ? null : type.cast(entry.get());
+    }
+
+    public void putProxy(Class<?> type, long id, Object proxy) {
+        expunge();
+        Key key = key(type, id);
+        Scope scope = scope();
+        scope.proxies.put(key, new Entry(key, proxy, scope.proxies, queue));
+    }
+
+    public void remove(Class<?> type, long id) {
+        Key key = key(type, id);
+        Scope scope = scope();
+        scope.entities.remove(key);
+        scope.proxies.remove(key);
+        if (scope != shared) {
+            scope.written.add(key);
+        }
+    }
+
+    /**
+     * Remember the id an immutable entity got when it was inserted.
+     */
+    public void putInserted(Object entity, long id) {
+        expunge();
+        Scope scope = scope();
+        scope.inserted.put(new Instance(entity, scope.inserted, queue), id);
+    }
+
+    /**
+     * Check that an immutable entity without an id can be inserted.
+     *
+     * @throws PersistenceException if the entity was already inserted, another insert would duplicate its row
+     */
+    public void checkNotInserted(Object entity) {
+        long id = getInsertedId(entity);
+        if (id != 0) {
+            throw new PersistenceException("Immutable entity " + entity.getClass().getSimpleName()
+                    + " was already saved with id " + id + ", create it with its id to update the row.");
+        }
+    }
+
+    /**
+     * @return id an immutable entity got when it was inserted, 0 if it was not inserted
+     */
+    public long getInsertedId(Object entity) {
+        Instance instance = new Instance(entity, null, null);
+        Scope transaction = transactions.get();
+        Long id = transaction == null ? null : transaction.inserted.get(instance);
+        if (id == null) {
+            id = shared.inserted.get(instance);
+        }
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * Forget that immutable entities were inserted, e.g. after their inserts were rolled back.
+     * Other entities are skipped.
+     */
+    public void forgetInserted(Collection<?> entities) {
+        Scope scope = scope();
+        for (Object entity : entities) {
+            scope.inserted.remove(new Instance(entity, null, null));
+        }
+    }
+
+    /**
+     * Forget all instances, e.g. after a rollback made their state unreliable.
+     * Inside a transaction, only the instances of the transaction are forgotten.
+     * Inserted immutable entities are still known, see {@link #forgetInserted(Collection)}.
+     */
+    public void clear() {
+        Scope scope = scope();
+        scope.entities.clear();
+        scope.proxies.clear();
+    }
+
+    /**
+     * Remember the persisted column values of a registered entity.
+     * Nothing is remembered if another instance is registered for the row.
+     */
+    public void setSnapshot(Class<?> type, long id, Object entity, Object[] snapshot) {
+        Entry entry = scope().entities.get(key(type, id));
+        if (entry != null && entry.get() == entity) {
+            entry.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * @return persisted column values of the registered entity, or <code>null</code> if they are not known
+     */
+    public Object[] getSnapshot(Class<?> type, long id, Object entity) {
+        Key key = key(type, id);
+        Scope scope = scope();
+        Entry entry = scope.entities.get(key);
+        if (entry != null && entry.get() == entity) {
+            return entry.snapshot;
+        }
+        // Committed values of a shared instance are valid, until the transaction writes the row
+        if (scope != shared && !scope.written.contains(key)) {
+            entry = shared.entities.get(key);
+            return entry != null && entry.get() == entity ? entry.snapshot : null;
+        }
+        return null;
+    }
+
+    public int size() {
+        expunge();
+        Scope scope = scope();
+        return scope.entities.size() + scope.proxies.size();
+    }
+
+    private Scope scope() {
+        Scope transaction = transactions.get();
+        return transaction == null ? shared : transaction;
+    }
+
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            if (reference instanceof Entry entry) {
+                entry.map.remove(entry.key, entry);
+            } else if (reference instanceof Instance instance) {
+                instance.map.remove(instance);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package sk.tuke.meta.persistence;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Create an index on the table of the entity, together with the table.
+ * <p>
+ * On an entity class, {@link #columnList()} names the indexed columns, e.g. <code>"surname, age DESC"</code>.
+ * On a field, the column of the field is indexed unless a column list is given.
+ * <code>@ManyToOne</code> columns are indexed automatically.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Repeatable(Indexes.class)
+public @interface Index {
+    /**
+     * @return name of the index, by default derived from the table and column names
+     */
+    String name() default "";
+
+    /**
+     * @return comma separated column names, each optionally followed by <code>ASC</code> or <code>DESC</code>
+     */
+    String columnList() default "";
+
+    boolean unique() default false;
+}
@@ -0,0 +1,126 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Keyset pagination shared by the persistence managers.
+ * <p>
+ * A page continues after the last entity of the previous page, <code>WHERE (column, id) > (?, ?)</code>,
+ * instead of skipping rows with <code>OFFSET</code>. With an index on the column, each page costs
+ * the same however deep into the table it is. The continuation token encodes the id of the last entity
+ * and, unless paging by the id, the column and its value, so it is rejected by a page of another column.
+ */
+final class KeysetPagination {
+    private KeysetPagination() {
+    }
+
+    /**
+     * @param query selects entities with SQL following <code>FROM</code> and its parameters
+     */
+    static <T> Page<T> page(EntityMetadata metadata, String columnName, String continuationToken, int limit,
+                            BiFunction<String, List<Object>, List<T>> query) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + limit);
+        }
+
+        ColumnMetadata id = metadata.getIdColumn();
+        ColumnMetadata column = columnName == null ? id : metadata.requireColumn(columnName);
+        boolean byId = column == id;
+
+        String clause;
+        List<Object> parameters = new ArrayList<>();
+        if (byId) {
+            clause = String.format(" WHERE %1$s > ? ORDER BY %1$s LIMIT ?", id.getName());
+            parameters.add(continuationToken == null ? 0L : decodeId(continuationToken));
+        } else if (continuationToken == null) {
+            clause = String.format(" WHERE %1$s IS NOT NULL ORDER BY %1$s, %2$s LIMIT ?", column.getName(), id.getName());
+        } else {
+            clause = String.format(" WHERE (%1$s, %2$s) > (?, ?) ORDER BY %1$s, %2$s LIMIT ?", column.getName(), id.getName());
+            parameters.add(decodeValue(continuationToken, column));
+            parameters.add(decodeId(continuationToken));
+        }
+        // One more row tells whether there is a next page
+        parameters.add(limit + 1);
+
+        List<T> entities = query.apply(clause, parameters);
+        if (entities.size() <= limit) {
+            return new Page<>(entities, null);
+        }
+
+        List<T> items = new ArrayList<>(entities.subList(0, limit));
+        T last = items.get(limit - 1);
+        return new Page<>(items, byId ? idToken(metadata.getId(last)) : encode(metadata.getId(last), column, value(column, last)));
+    }
+
+    /**
+     * @return token of a page by the primary key following the entity with given id
+     */
+    static String idToken(long id) {
+        return encode(id, null, null);
+    }
+
+    private static Object value(ColumnMetadata column, Object entity) {
+        Object value = column.get(entity);
+        return column.isManyToOne() && value != null ? ProxyManager.getId(value) : value;
+    }
+
+    private static String encode(long id, ColumnMetadata column, Object value) {
+        StringBuilder token = new StringBuilder().append(id);
+        if (column != null) {
+            token.append(':').append(column.getName());
+        }
+        if (value instanceof String || value instanceof Character) {
+            token.append(":S").append(value);
+        } else if (value instanceof Boolean bool) {
+            token.append(":L").append(bool ? 1 : 0);
+        } else if (value instanceof Double || value instanceof Float) {
+            token.append(":D").append(((Number) value).doubleValue());
+        } else if (value instanceof Number number) {
+            token.append(":L").append(number.longValue());
+        } else if (value != null) {
+            throw new PersistenceException("Cannot page by a column of type " + value.getClass().getName() + ".");
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String continuationToken) {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+            return token.split(":", 3);
+        } catch (IllegalArgumentException e) {
+            throw new PersistenceException("Invalid continuation token.", e);
+        }
+    }
+
+    private static long decodeId(String continuationToken) {
+        try {
+            return Long.parseLong(decode(continuationToken)[0]);
+        } catch (NumberFormatException e) {
+            throw new PersistenceException("Invalid continuation token.", e);
+        }
+    }
+
+    private static Object decodeValue(String continuationToken, ColumnMetadata column) {
+        String[] token = decode(continuationToken);
+        if (token.length < 3 || !token[1].equals(column.getName()) || token[2].isEmpty()) {
+            throw new PersistenceException("Continuation token does not belong to a page by this column.");
+        }
+
+        String value = token[2].substring(1);
+        try {
+            return switch (token[2].charAt(0)) {
+                case 'S' -> value;
+                case 'L' -> Long.parseLong(value);
+                case 'D' -> Double.parseDouble(value);
+                default -> throw new PersistenceException("Invalid continuation token.");
+            };
+        } catch (NumberFormatException e) {
+            throw new PersistenceException("Invalid continuation token.", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package sk.tuke.meta.persistence;
+
+/**
+ * Implemented by lazy references generated for entities by the annotation processor.
+ * The generated class extends the entity and loads its state on the first method call
+ * other than the id getter.
+ */
+public interface LazyReference {
+    long getReferencedId();
+
+    boolean isLoaded();
+}
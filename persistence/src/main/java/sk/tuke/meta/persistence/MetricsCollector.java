@@ -0,0 +1,170 @@
+package sk.tuke.meta.persistence;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener collecting latency histograms of operations and statements, counting lazy loads
+ * and detecting N+1 selects, to be scraped e.g. by a metrics exporter.
+ * <p>
+ * A thread executing the same <code>SELECT</code> many times in a row, typically loading lazy references
+ * or calling {@link PersistenceManager#get} in a loop, is counted as a suspected N+1 select
+ * and logged once per run.
+ */
+public class MetricsCollector implements PersistenceListener {
+    public static final int DEFAULT_N_PLUS_ONE_THRESHOLD = 10;
+
+    private static final System.Logger LOGGER = System.getLogger(MetricsCollector.class.getName());
+
+    private final int nPlusOneThreshold;
+    private final Map<OperationKey, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LongAdder> lazyLoads = new ConcurrentHashMap<>();
+    private final LongAdder suspectedNPlusOne = new LongAdder();
+    private final ThreadLocal<Run> runs = ThreadLocal.withInitial(Run::new);
+
+    private record OperationKey(Operation operation, Class<?> entityType) {
+        @Override
+        public String toString() {
+            return entityType == null ? operation.name() : operation + " " + entityType.getSimpleName();
+        }
+    }
+
+    /**
+     * Statements executed by a thread in a row.
+     */
+    private static final class Run {
+        private String sql;
+        private int length;
+    }
+
+    /**
+     * Metrics of one operation on one entity type.
+     */
+    public static final class OperationMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        private void reset() {
+            latency.reset();
+            rows.reset();
+            failures.reset();
+        }
+
+        @Override
+        public String toString() {
+            return latency + " rows=" + getRows() + " failures=" + getFailures();
+        }
+    }
+
+    public MetricsCollector() {
+        this(DEFAULT_N_PLUS_ONE_THRESHOLD);
+    }
+
+    /**
+     * @param nPlusOneThreshold number of identical selects executed by a thread in a row
+     *                          reported as an N+1 select
+     */
+    public MetricsCollector(int nPlusOneThreshold) {
+        if (nPlusOneThreshold < 2) {
+            throw new IllegalArgumentException("N+1 threshold must be at least 2: " + nPlusOneThreshold);
+        }
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    public void statementCompleted(String sql, long nanos) {
+        statements.computeIfAbsent(sql, key -> new LatencyHistogram()).record(nanos);
+
+        Run run = runs.get();
+        if (!sql.equals(run.sql)) {
+            run.sql = sql;
+            run.length = 0;
+        }
+        if (++run.length == nPlusOneThreshold && sql.startsWith("SELECT")) {
+            suspectedNPlusOne.increment();
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Suspected N+1 select, executed {0} times in a row: {1}", nPlusOneThreshold, sql);
+        }
+    }
+
+    @Override
+    public void operationCompleted(Operation operation, Class<?> entityType, int rows, long nanos,
+                                   Throwable failure) {
+        OperationMetrics metrics = operations.computeIfAbsent(new OperationKey(operation, entityType),
+                key -> new OperationMetrics());
+        metrics.latency.record(nanos);
+        metrics.rows.add(rows);
+        if (failure != null) {
+            metrics.failures.increment();
+        }
+    }
+
+    @Override
+    public void lazyLoaded(Class<?> entityType, long id) {
+        lazyLoads.computeIfAbsent(EntityMetadata.entityClass(entityType), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param entityType entity class, <code>null</code> for operations not limited to one type
+     * @return metrics of the operation, <code>null</code> if it was not completed yet
+     */
+    public OperationMetrics getOperation(Operation operation, Class<?> entityType) {
+        return operations.get(new OperationKey(operation, entityType));
+    }
+
+    /**
+     * @return metrics of completed operations by labels like <code>GET Person</code>
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        Map<String, OperationMetrics> result = new TreeMap<>();
+        operations.forEach((key, metrics) -> result.put(key.toString(), metrics));
+        return result;
+    }
+
+    /**
+     * @return latencies of executed statements by their SQL
+     */
+    public Map<String, LatencyHistogram> getStatements() {
+        return new TreeMap<>(statements);
+    }
+
+    public long getLazyLoads(Class<?> entityType) {
+        LongAdder count = lazyLoads.get(EntityMetadata.entityClass(entityType));
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getLazyLoads() {
+        return lazyLoads.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long getSuspectedNPlusOne() {
+        return suspectedNPlusOne.sum();
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+        statements.values().forEach(LatencyHistogram::reset);
+        lazyLoads.values().forEach(LongAdder::reset);
+        suspectedNPlusOne.reset();
+    }
+}
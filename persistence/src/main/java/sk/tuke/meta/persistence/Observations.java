@@ -0,0 +1,66 @@
+package sk.tuke.meta.persistence;
+
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Reports operations of persistence managers to the listener of their connection provider.
+ * Operations run unmeasured while the listener is {@link PersistenceListener#NONE}.
+ */
+final class Observations {
+    private Observations() {
+    }
+
+    static <R> R observe(ConnectionProvider connectionProvider, PersistenceListener.Operation operation,
+                         Class<?> entityType, Supplier<R> action, ToIntFunction<? super R> rows) {
+        PersistenceListener listener = connectionProvider.getListener();
+        if (listener == PersistenceListener.NONE) {
+            return action.get();
+        }
+
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            listener.operationCompleted(operation, entityType, 0, System.nanoTime() - start, e);
+            throw e;
+        }
+        listener.operationCompleted(operation, entityType, rows.applyAsInt(result), System.nanoTime() - start, null);
+        return result;
+    }
+
+    static void observe(ConnectionProvider connectionProvider, PersistenceListener.Operation operation,
+                        Class<?> entityType, int rows, Runnable action) {
+        observe(connectionProvider, operation, entityType, () -> {
+            action.run();
+            return null;
+        }, result -> rows);
+    }
+
+    /**
+     * Count entities read from the stream and report them when it is closed.
+     */
+    static <T> Stream<T> observeStream(ConnectionProvider connectionProvider, Class<?> entityType,
+                                       Supplier<Stream<T>> open) {
+        PersistenceListener listener = connectionProvider.getListener();
+        if (listener == PersistenceListener.NONE) {
+            return open.get();
+        }
+
+        long start = System.nanoTime();
+        Stream<T> stream;
+        try {
+            stream = open.get();
+        } catch (RuntimeException | Error e) {
+            listener.operationCompleted(PersistenceListener.Operation.STREAM, entityType, 0,
+                    System.nanoTime() - start, e);
+            throw e;
+        }
+
+        int[] rows = new int[1];
+        return stream.peek(entity -> rows[0]++).onClose(() -> listener.operationCompleted(
+                PersistenceListener.Operation.STREAM, entityType, rows[0], System.nanoTime() - start, null));
+    }
+}
@@ -0,0 +1,92 @@
+package sk.tuke.meta.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepared statement proxy measuring the time spent in its <code>execute</code> methods and, for
+ * {@link SlowQueryLog}, remembering parameters bound to the statement.
+ * <p>
+ * Only the execution is measured, not reading the results, so the time does not include hydrating
+ * entities, loading their references or consuming a stream.
+ */
+final class ObservedStatement implements InvocationHandler {
+    private final PreparedStatement statement;
+    private final PreparedStatement proxy;
+    private final List<Object> parameters = new ArrayList<>();
+    private boolean recordParameters;
+    private long executionNanos;
+    private int executions;
+
+    ObservedStatement(PreparedStatement statement) {
+        this.statement = statement;
+        this.proxy = (PreparedStatement) Proxy.newProxyInstance(ObservedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, this);
+    }
+
+    PreparedStatement getProxy() {
+        return proxy;
+    }
+
+    List<Object> getParameters() {
+        return new ArrayList<>(parameters);
+    }
+
+    long getExecutionNanos() {
+        return executionNanos;
+    }
+
+    int getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Start observing a new checkout of the statement.
+     */
+    void reset(boolean recordParameters) {
+        this.recordParameters = recordParameters;
+        parameters.clear();
+        executionNanos = 0;
+        executions = 0;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("execute")) {
+            long start = System.nanoTime();
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                executionNanos += System.nanoTime() - start;
+                executions++;
+            }
+        }
+
+        if (recordParameters) {
+            if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.startsWith("set") && args != null && args.length >= 2
+                    && method.getParameterTypes()[0] == int.class && (Integer) args[0] > 0) {
+                int index = (Integer) args[0];
+                while (parameters.size() < index) {
+                    parameters.add(null);
+                }
+                parameters.set(index - 1, name.equals("setNull") ? null : args[1]);
+            }
+        }
+
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
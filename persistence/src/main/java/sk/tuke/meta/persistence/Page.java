@@ -0,0 +1,31 @@
+package sk.tuke.meta.persistence;
+
+import java.util.List;
+
+/**
+ * One page of entities returned by keyset pagination, see {@link PersistenceManager#page(Class, String, String, int)}.
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String continuationToken;
+
+    Page(List<T> items, String continuationToken) {
+        this.items = items;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return opaque token requesting the next page, or <code>null</code> if this is the last page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,57 @@
+package sk.tuke.meta.persistence;
+
+/**
+ * Observes statements and operations of persistence managers, e.g. to collect metrics.
+ * <p>
+ * A listener is set on the {@link ConnectionProvider} and sees everything executed through it.
+ * Methods are called by the threads running the operations, they should be fast and thread-safe.
+ * Nothing is measured while the listener is {@link #NONE}.
+ *
+ * @see MetricsCollector
+ */
+public interface PersistenceListener {
+    /**
+     * Listener ignoring all events, the default.
+     */
+    PersistenceListener NONE = new PersistenceListener() {
+    };
+
+    enum Operation {
+        GET,
+        GET_BY_IDS,
+        GET_ALL,
+        GET_BY,
+        STREAM,
+        PAGE,
+        SAVE,
+        SAVE_ALL,
+        DELETE,
+        DELETE_ALL
+    }
+
+    /**
+     * A statement was released after its execution.
+     *
+     * @param sql   SQL of the statement
+     * @param nanos time spent executing the statement, without reading its results
+     */
+    default void statementCompleted(String sql, long nanos) {
+    }
+
+    /**
+     * An operation of a persistence manager completed. A stream completes when it is closed.
+     *
+     * @param entityType entity class, <code>null</code> if the operation is not limited to one
+     * @param rows       number of entities read or written
+     * @param failure    exception thrown by the operation, <code>null</code> if it succeeded
+     */
+    default void operationCompleted(Operation operation, Class<?> entityType, int rows, long nanos,
+                                    Throwable failure) {
+    }
+
+    /**
+     * A lazy reference is about to be loaded, because one of its methods was called.
+     */
+    default void lazyLoaded(Class<?> entityType, long id) {
+    }
+}
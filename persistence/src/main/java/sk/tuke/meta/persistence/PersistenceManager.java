@@ -2,8 +2,11 @@ package sk.tuke.meta.persistence;
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * PersistenceManager allows to persist a set of entities into a database.
@@ -14,7 +17,7 @@ import java.util.Optional;
  * Implementations of this interface may require additional configuration
  * as constructor arguments, e.g. database connection.
  */
-public interface PersistenceManager {
+public interface PersistenceManager extends AutoCloseable {
 
     /**
      * Create database tables for all managed entity classes.
@@ -30,6 +33,16 @@ public interface PersistenceManager {
      */
     <T> Optional<T> get(Class<T> type, long id) throws SQLException, NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException, NoSuchFieldException;
 
+    /**
+     * Get entities of specified type by many primary keys at once,
+     * using a constant number of queries instead of one query per id.
+     *
+     * @param type entity class
+     * @param ids  primary key values
+     * @return found entities by their primary key, ids of missing entities are not present
+     */
+    <T> Map<Long, T> getByIds(Class<T> type, Collection<Long> ids);
+
     /**
      * Get all entities of specified type.
      *
@@ -48,6 +61,56 @@ public interface PersistenceManager {
      */
     <T> List<T> getBy(Class<T> type, String fieldName, Object value);
 
+    /**
+     * Lazily stream all entities of specified type. Rows are read from the database in chunks
+     * of the fetch size while the stream is consumed, so the whole table is never held in memory.
+     * Eager references are loaded for each chunk together.
+     * <p>
+     * The stream keeps the underlying result set open and should be closed,
+     * e.g. using try-with-resources, unless it is consumed completely.
+     *
+     * @param type entity class
+     * @return a stream of all entities stored in the database
+     */
+    <T> Stream<T> streamAll(Class<T> type);
+
+    /**
+     * Lazily stream entities based on any field value.
+     * The stream should be closed as described in {@link #streamAll(Class)}.
+     *
+     * @param type      entity class
+     * @param fieldName name of the field
+     * @param value     searched field value
+     * @return a stream of entities where named field has specified value
+     */
+    <T> Stream<T> streamBy(Class<T> type, String fieldName, Object value);
+
+    /**
+     * Get a page of entities ordered by the primary key, using keyset pagination.
+     *
+     * @param type    entity class
+     * @param afterId primary key of the last entity of the previous page, 0 for the first page
+     * @param limit   maximum number of entities on the page
+     * @return the page, its continuation token requests the next page by the primary key
+     */
+    default <T> Page<T> page(Class<T> type, long afterId, int limit) {
+        return page(type, null, KeysetPagination.idToken(afterId), limit);
+    }
+
+    /**
+     * Get a page of entities ordered by a column and then by the primary key, using keyset pagination.
+     * Each page continues right after the last entity of the previous one, so walking a table
+     * costs the same for every page when the column is indexed. Entities with <code>null</code>
+     * in the column are not returned.
+     *
+     * @param type              entity class
+     * @param column            name of the column, <code>null</code> for the primary key
+     * @param continuationToken token of the previous page, <code>null</code> for the first page
+     * @param limit             maximum number of entities on the page
+     * @return the page of entities
+     */
+    <T> Page<T> page(Class<T> type, String column, String continuationToken, int limit);
+
     /**
      * Save entity into a database.
      * If entity has a non-zero identifier, manager would try to perform
@@ -58,6 +121,15 @@ public interface PersistenceManager {
      */
     long save(Object entity);
 
+    /**
+     * Save a collection of entities using JDBC batches in a single transaction.
+     * Unsaved entities referenced by <code>@ManyToOne</code> fields are saved first.
+     * Generated primary keys are assigned to the inserted entities.
+     *
+     * @param entities the entities to be saved, possibly of different types
+     */
+    void saveAll(Collection<?> entities);
+
     /**
      * Delete the entity from the database, based on the primary key.
      *
@@ -65,9 +137,42 @@ public interface PersistenceManager {
      */
     void delete(Object entity);
 
+    /**
+     * Delete a collection of entities using JDBC batches in a single transaction.
+     * Entities are deleted by type, types referencing other types by <code>@ManyToOne</code> first.
+     *
+     * @param entities the entities to be deleted, possibly of different types
+     */
+    void deleteAll(Collection<?> entities);
+
+    /**
+     * Start a transaction of the current thread, joining a transaction that is already running.
+     */
     void startTransaction() throws SQLException;
 
+    /**
+     * Start a transaction of the current thread.
+     *
+     * @param propagation how to behave if a transaction of the thread is already running
+     */
+    default void startTransaction(Propagation propagation) throws SQLException {
+        startTransaction();
+    }
+
+    /**
+     * Commit the transaction started last by the current thread.
+     */
     void commitTransaction() throws SQLException;
 
+    /**
+     * Roll back the transaction started last by the current thread.
+     */
     void rollbackTransaction() throws SQLException;
+
+    /**
+     * Release resources held by the manager, e.g. cached prepared statements.
+     * The database connection itself is not closed.
+     */
+    @Override
+    void close();
 }
@@ -0,0 +1,17 @@
+package sk.tuke.meta.persistence;
+
+/**
+ * How a transaction behaves when another transaction of the same thread is already running.
+ */
+public enum Propagation {
+    /**
+     * Join the running transaction, or start a new one. Joining costs no database round trip.
+     * A failure marks the whole transaction for rollback.
+     */
+    REQUIRED,
+    /**
+     * Run in a savepoint of the running transaction, or start a new one.
+     * A failure rolls back only the changes made since the savepoint.
+     */
+    NESTED
+}
@@ -4,44 +4,102 @@ import javassist.util.proxy.MethodHandler;
 import javassist.util.proxy.ProxyFactory;
 import javassist.util.proxy.ProxyObject;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import javax.persistence.PersistenceException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.sql.Connection;
-import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ProxyManager {
+    /**
+     * Constructor of the proxy class of each entity, generated only once per entity.
+     */
+    private static final ClassValue<MethodHandle> PROXY_CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> targetClass) {
+            ProxyFactory proxyFactory = new ProxyFactory();
+            proxyFactory.setSuperclass(targetClass);
+            Class<?> proxyClass = proxyFactory.createClass();
+
+            try {
+                return MethodHandles.publicLookup()
+                        .findConstructor(proxyClass, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new PersistenceException(e);
+            }
+        }
+    };
+
+    /**
+     * Loads the entity behind a proxy, usually {@link PersistenceManager#get} of the owning manager.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return the loaded entity, or <code>null</code> if it does not exist
+         */
+        Object load(Class<?> type, long id);
+    }
 
-    private static <T> void setProxyFields(T proxy, T object) throws IllegalAccessException, NoSuchFieldException, InvocationTargetException, NoSuchMethodException {
+    /**
+     * Copy all persistent fields of a loaded entity into a proxy or lazy reference of it.
+     */
+    public static <T> void setProxyFields(T proxy, T object) {
         if(object == null){
             return;
         }
 
-        Map<String, Object> fieldsWithValues = ReflectionManager.getFieldNamesWithValues(object);
+        for (ColumnMetadata column : EntityMetadata.of(object).getAllColumns()) {
+            column.set(proxy, column.get(object));
+        }
+    }
 
-        for (Map.Entry<String, Object> entry : fieldsWithValues.entrySet()) {
-            Field proxyField = proxy.getClass().getSuperclass().getDeclaredField(entry.getKey());
-            proxyField.setAccessible(true);
-            proxyField.set(proxy, entry.getValue());
+    /**
+     * @return id of the entity, also if it is a proxy or lazy reference that has not been loaded yet
+     */
+    public static long getId(Object entity) {
+        if(entity instanceof LazyReference reference){
+            return reference.getReferencedId();
+        }
+        if(entity instanceof ProxyObject proxy && proxy.getHandler() instanceof MyMethodHandler handler){
+            return handler.primaryKey;
         }
+        return EntityMetadata.of(entity).getId(entity);
     }
 
-    public static <T> T createProxy(Connection connection, Class<T> targetClass, long id)
+    /**
+     * Create a lazy reference to the entity with given id. If the identity map already
+     * knows the entity or a proxy of it, that instance is returned instead.
+     * <p>
+     * The id of the proxy is set right away, other fields are loaded by the loader
+     * on the first method call. Immutable entities cannot be proxied, they are loaded right away.
+     */
+    public static <T> T createProxy(Loader loader, IdentityMap identityMap, Class<T> targetClass, long id)
             throws InstantiationException, IllegalAccessException {
+        T known = identityMap.getReference(targetClass, id);
+        if(known != null){
+            return known;
+        }
+        if(EntityMetadata.of(targetClass).isImmutable()){
+            return targetClass.cast(loader.load(targetClass, id));
+        }
 
+        Object instance;
+        try {
+            instance = (Object) PROXY_CONSTRUCTORS.get(targetClass).invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            InstantiationException exception = new InstantiationException(targetClass.getName());
+            exception.initCause(e);
+            throw exception;
+        }
 
-
-
-        ProxyFactory proxyFactory = new ProxyFactory();
-        proxyFactory.setSuperclass(targetClass);
-        Class clazz = proxyFactory.createClass();
-
-        MethodHandler handler = new MyMethodHandler(connection, targetClass, id);
-
-        Object instance = clazz.newInstance();
-
-        ((ProxyObject) instance).setHandler(handler);
+        ((ProxyObject) instance).setHandler(new MyMethodHandler(loader, identityMap, targetClass, id));
+        EntityMetadata.of(targetClass).setId(instance, id);
+        identityMap.putProxy(targetClass, id, instance);
 
         return (T) instance;
     }
@@ -51,26 +109,34 @@ public class ProxyManager {
     private static class MyMethodHandler implements MethodHandler{
         final private Class<?> targetEntity;
         final private long primaryKey;
-        final private Connection connection;
-        public MyMethodHandler(Connection connection, Class<?> targetEntity, long primaryKey) {
+        final private Loader loader;
+        final private IdentityMap identityMap;
+        final private ReentrantLock lock = new ReentrantLock();
+        private volatile boolean loaded;
+
+        public MyMethodHandler(Loader loader, IdentityMap identityMap, Class<?> targetEntity, long primaryKey) {
             this.targetEntity = targetEntity;
             this.primaryKey = primaryKey;
-            this.connection = connection;
+            this.loader = loader;
+            this.identityMap = identityMap;
+            this.loaded = primaryKey == 0;
         }
 
-        private <T> void loadObject(T proxy) throws IllegalAccessException, NoSuchFieldException, InvocationTargetException, NoSuchMethodException {
-            Field idField = ReflectionManager.getIdField(targetEntity);
-            idField.setAccessible(true);
-            long idValue = (long) idField.get(proxy);
-
-            if(idValue == 0 && primaryKey != 0){
-                ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection);
-                Optional<T> optional = (Optional<T>) manager.get(targetEntity, primaryKey);
-                if(optional.isEmpty()){
-                    proxy = null;
-                } else {
-                    setProxyFields(proxy, optional.get());
+        private <T> void loadObject(T proxy) {
+            lock.lock();
+            try {
+                if(loaded){
+                    return;
+                }
+
+                Object known = identityMap.get(targetEntity, primaryKey);
+                if(known == null){
+                    known = loader.load(targetEntity, primaryKey);
                 }
+                setProxyFields(proxy, (T) known);
+                loaded = true;
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -78,7 +144,9 @@ public class ProxyManager {
         public Object invoke(Object self, Method overridden, Method forwarder,
                              Object[] args) throws Throwable {
 
-            loadObject(self);
+            if(!loaded){
+                loadObject(self);
+            }
             return forwarder.invoke(self, args);
         }
     }
@@ -0,0 +1,137 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Column of entity <code>T</code> with values of type <code>V</code>, used to build an {@link EntityQuery}.
+ * Constants of this type are generated into the query class of each entity. Values are always bound
+ * as statement parameters, a reference column is compared with the id of the referenced entity.
+ */
+public final class QueryField<T, V> {
+    private final String column;
+    private final Class<V> type;
+
+    /**
+     * @param column name of a column of the entity, in any case
+     * @throws PersistenceException if the entity has no such column, so no other SQL can be part of a query
+     */
+    public QueryField(Class<T> entityType, String column, Class<V> type) {
+        this.column = EntityMetadata.of(entityType).requireColumn(column).getName();
+        this.type = type;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Class<V> getType() {
+        return type;
+    }
+
+    /**
+     * Read the value of the field from a column of the current row, converting numbers to the field type.
+     */
+    V read(ResultSet resultSet, int columnIndex) throws SQLException {
+        Object value = resultSet.getObject(columnIndex);
+        if (value instanceof Number number) {
+            value = ColumnMetadata.convertNumber(number, type);
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * @return condition matching the value, or a <code>null</code> column if the value is <code>null</code>
+     */
+    public EntityQuery.Condition<T> eq(V value) {
+        return value == null ? isNull() : compare(" = ?", value);
+    }
+
+    /**
+     * @return condition matching other values than the given one, or a not <code>null</code> column
+     * if the value is <code>null</code>
+     */
+    public EntityQuery.Condition<T> ne(V value) {
+        return value == null ? isNotNull() : compare(" <> ?", value);
+    }
+
+    public EntityQuery.Condition<T> lt(V value) {
+        return compare(" < ?", value);
+    }
+
+    public EntityQuery.Condition<T> le(V value) {
+        return compare(" <= ?", value);
+    }
+
+    public EntityQuery.Condition<T> gt(V value) {
+        return compare(" > ?", value);
+    }
+
+    public EntityQuery.Condition<T> ge(V value) {
+        return compare(" >= ?", value);
+    }
+
+    /**
+     * @return condition matching values from <code>from</code> to <code>to</code>, both inclusive
+     */
+    public EntityQuery.Condition<T> between(V from, V to) {
+        return new EntityQuery.Condition<>(column + " BETWEEN ? AND ?", List.of(from, to));
+    }
+
+    /**
+     * The parameter list is padded to the next power of two by repeating a value,
+     * so lists of similar sizes share one prepared statement.
+     *
+     * @return condition matching any of the values, none if there are no values
+     */
+    public EntityQuery.Condition<T> in(Collection<? extends V> values) {
+        if (values.isEmpty()) {
+            return new EntityQuery.Condition<>("0 = 1", List.of());
+        }
+
+        List<Object> parameters = new ArrayList<>(values);
+        int size = Integer.highestOneBit(parameters.size() - 1) << 1;
+        Object last = parameters.get(parameters.size() - 1);
+        while (parameters.size() < size) {
+            parameters.add(last);
+        }
+        return new EntityQuery.Condition<>(
+                column + " IN (" + String.join(",", Collections.nCopies(parameters.size(), "?")) + ")",
+                parameters);
+    }
+
+    /**
+     * @param pattern SQL pattern, <code>%</code> matches any sequence of characters and <code>_</code> any character
+     */
+    public EntityQuery.Condition<T> like(String pattern) {
+        return new EntityQuery.Condition<>(column + " LIKE ?", List.of(pattern));
+    }
+
+    public EntityQuery.Condition<T> isNull() {
+        return new EntityQuery.Condition<>(column + " IS NULL", List.of());
+    }
+
+    public EntityQuery.Condition<T> isNotNull() {
+        return new EntityQuery.Condition<>(column + " IS NOT NULL", List.of());
+    }
+
+    public EntityQuery.Order<T> asc() {
+        return new EntityQuery.Order<>(column + " ASC");
+    }
+
+    public EntityQuery.Order<T> desc() {
+        return new EntityQuery.Order<>(column + " DESC");
+    }
+
+    private EntityQuery.Condition<T> compare(String operator, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot compare " + column + " with null.");
+        }
+        return new EntityQuery.Condition<>(column + operator, Collections.singletonList(value));
+    }
+}
@@ -1,54 +1,30 @@
 package sk.tuke.meta.persistence;
 
-import javassist.util.proxy.ProxyObject;
-
 import javax.persistence.*;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ReflectionManager {
 
-    static public String getTableName(Class<?> type) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        if(type.isAnnotationPresent(Table.class)){
-            Annotation annotation = type.getAnnotation(Table.class);
-            String name = (String) annotation.getClass().getMethod("name").invoke(annotation);
-            return (name != null && name.length() > 0) ? name : type.getSimpleName();
-        }
-
-        return type.getSimpleName();
+    static public String getTableName(Class<?> type) {
+        return EntityMetadata.of(type).getTableName();
     }
 
-    static public String getFieldName(Field field) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        if(field.isAnnotationPresent(Column.class)){
-            Annotation annotation = field.getAnnotation(Column.class);
-            String name = (String) annotation.getClass().getMethod("name").invoke(annotation);
-            return (name != null && name.length() > 0) ? name : field.getName();
-        }
-
-        return field.getName();
+    static public String getFieldName(Field field) {
+        return ColumnMetadata.columnName(field);
     }
 
-    static boolean isUniqueField(Field field) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        if(field.isAnnotationPresent(Column.class)){
-            Annotation annotation = field.getAnnotation(Column.class);
-            return (boolean) annotation.getClass().getMethod("unique").invoke(annotation);
-        }
-
-        return false;
+    static boolean isUniqueField(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        return column != null && column.unique();
     }
 
-    static  boolean isNullableField(Field field) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        if(field.isAnnotationPresent(Column.class)){
-            Annotation annotation = field.getAnnotation(Column.class);
-            return (boolean) annotation.getClass().getMethod("nullable").invoke(annotation);
-        }
-
-        return true;
+    static  boolean isNullableField(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        return column == null || column.nullable();
     }
 
     static boolean isTransientField(Field field){
@@ -63,130 +39,71 @@ public class ReflectionManager {
         return field.isAnnotationPresent(ManyToOne.class);
     }
 
-    static Map<String, Object> getFieldNamesWithValues(Object obj) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-        Map<String, Object> map = new HashMap<>();
-
-        for (Field field : obj.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            map.put(ReflectionManager.getFieldName(field), field.get(obj));
+    static public Object getValueOfFieldByName(Object object, String name) throws NoSuchFieldException {
+        ColumnMetadata column = EntityMetadata.of(object).getColumnByFieldName(name);
+        if(column == null){
+            throw new NoSuchFieldException(name);
         }
-
-        return map;
+        return column.get(object);
     }
 
-    static public Object getValueOfFieldByName(Object object, String name) throws IllegalAccessException, NoSuchFieldException {
-        Field field = object.getClass().getDeclaredField(name);
-        field.setAccessible(true);
-        return field.get(object);
-    }
-
-    static public Object getObjectPrimaryKey(Object object) throws IllegalAccessException {
+    static public Object getObjectPrimaryKey(Object object) {
         if(object == null){
             return null;
         }
 
-        Field[] fields;
-
-        if(ProxyObject.class.isAssignableFrom(object.getClass())){
-            fields = object.getClass().getSuperclass().getDeclaredFields();
-        } else {
-            fields = object.getClass().getDeclaredFields();
-        }
-
-        for (Field field : fields) {
-            String name = field.getName();
-            field.setAccessible(true);
-            if(field.getAnnotation(Id.class) != null) {
-                return field.get(object);
-            }
-        }
-
-        return null;
+        return EntityMetadata.of(object).getId(object);
     }
 
-    static public void setObjectPrimaryKey(Object object, long id) throws IllegalAccessException {
-        for (Field field : object.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            if( field.getAnnotation(Id.class) != null) {
-                field.set(object, id);
-                break;
-            }
-        }
+    static public void setObjectPrimaryKey(Object object, long id) {
+        EntityMetadata.of(object).setId(object, id);
     }
 
     static public Field getIdField(Class<?> objectClass){
-        for(Field field: objectClass.getDeclaredFields()){
-            Annotation idAnnotation = field.getDeclaredAnnotation(Id.class);
-            if(idAnnotation != null){
-                return field;
-            }
-        }
-
-        return null;
+        return EntityMetadata.of(objectClass).getIdColumn().getField();
     }
 
-    static public List<String> getNameOfFieldsWithForeignKey(Class<?> objectClass) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
+    static public List<String> getNameOfFieldsWithForeignKey(Class<?> objectClass) {
         List<String> nameOfFields = new ArrayList<>();
-        for (Field field : objectClass.getDeclaredFields()) {
-            if(field.getAnnotation(ManyToOne.class) != null){
-                nameOfFields.add(getFieldName(field));
-            }
+        for (ColumnMetadata column : EntityMetadata.of(objectClass).getForeignKeys()) {
+            nameOfFields.add(column.getName());
         }
         return nameOfFields;
     }
 
-    static public void setObjectFields(Object object, Map<String, Object> map)
-            throws NoSuchFieldException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+    static public void setObjectFields(Object object, Map<String, Object> map) throws NoSuchFieldException {
+        EntityMetadata metadata = EntityMetadata.of(object);
 
         for (Map.Entry<String, Object> entry : map.entrySet()) {
-            Field field = getFieldByName(object ,entry.getKey());
-            field.setAccessible(true);
-            field.set(object, entry.getValue());
+            getColumnByName(metadata, entry.getKey()).set(object, entry.getValue());
         }
     }
 
-    static public Field getFieldByName(Object obj, String name) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, NoSuchFieldException {
-        for (Field field : obj.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            if(field.isAnnotationPresent(Column.class)){
-                Annotation annotation = field.getAnnotation(Column.class);
-                String nameInAnnotation = (String) annotation.getClass().getMethod("name").invoke(annotation);
+    static public Field getFieldByName(Object obj, String name) throws NoSuchFieldException {
+        return getColumnByName(EntityMetadata.of(obj), name).getField();
+    }
 
-                if(nameInAnnotation.equals(name)){
-                    return field;
-                }
-            }
+    private static ColumnMetadata getColumnByName(EntityMetadata metadata, String name) throws NoSuchFieldException {
+        ColumnMetadata column = metadata.getColumn(name);
+        if(column == null){
+            column = metadata.getColumnByFieldName(name);
         }
-
-        return obj.getClass().getDeclaredField(name);
+        if(column == null){
+            throw new NoSuchFieldException(name);
+        }
+        return column;
     }
 
-    static public Map<String, Object> getFieldNamesWithValuesExceptPrimaryKey(Object object) throws IllegalAccessException {
-        Map<String, Object> map = new HashMap<>();
-        for (Field field : object.getClass().getDeclaredFields()) {
-            boolean isPrimaryKey = field.getAnnotation(Id.class) != null;
-            boolean isFieldIgnored = field.getAnnotation(Transient.class) != null;
-
-            if(!isPrimaryKey && !isFieldIgnored){
-                field.setAccessible(true);
-
-                boolean isManyToOne = field.getAnnotation(ManyToOne.class) != null;
-
-                if(isManyToOne){
-                    map.put(field.getName(), getObjectPrimaryKey(field.get(object)));
-                } else {
-                    map.put(field.getName(), field.get(object));
-                }
+    static public Map<String, Object> getFieldNamesWithValuesExceptPrimaryKey(Object object) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (ColumnMetadata column : EntityMetadata.of(object).getColumns()) {
+            if(column.isManyToOne()){
+                map.put(column.getName(), getObjectPrimaryKey(column.get(object)));
+            } else {
+                map.put(column.getName(), column.get(object));
             }
         }
 
         return map;
     }
-
-
-    //======================================================================================
-
-
-
-
 }
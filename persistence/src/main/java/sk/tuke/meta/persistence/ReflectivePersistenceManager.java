@@ -1,65 +1,117 @@
 package sk.tuke.meta.persistence;
 
-import org.jetbrains.annotations.NotNull;
-import sk.tuke.meta.persistence.exceptions.MissingAnnotationException;
-import sk.tuke.meta.persistence.exceptions.PrimaryKeyException;
+import sk.tuke.meta.persistence.PersistenceListener.Operation;
 
-import javax.persistence.Entity;
 import javax.persistence.FetchType;
-import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceException;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class ReflectivePersistenceManager implements PersistenceManager {
-    Connection connection;
+    private final ConnectionProvider connectionProvider;
+    private final boolean ownsConnectionProvider;
+    private final IdentityMap identityMap = new IdentityMap();
+    private final TransactionalCache cache = new TransactionalCache();
+    private final TransactionContext transactions;
+    private volatile int fetchSize;
 
     public ReflectivePersistenceManager(Connection connection) {
-        this.connection = connection;
+        this(connection, StatementCache.DEFAULT_CAPACITY);
     }
 
+    public ReflectivePersistenceManager(Connection connection, int statementCacheCapacity) {
+        this(new SingleConnectionProvider(connection, statementCacheCapacity), true);
+    }
 
-    private void entityAnnotationCheck(@NotNull Class<?> objectClass) throws MissingAnnotationException {
-        if(objectClass.getAnnotation(Entity.class) != null){
-            return;
-        }
-        throw new MissingAnnotationException(objectClass.getName() + " does not have Entity annotation.");
+    /**
+     * Create a manager using connections of the provider, e.g. a {@link ConnectionPool}.
+     * The manager may be shared by threads, the provider is not closed with the manager.
+     */
+    public ReflectivePersistenceManager(ConnectionProvider connectionProvider) {
+        this(connectionProvider, false);
     }
 
-    private void idAnnotationCheck(@NotNull Class<?> objectClass) throws PrimaryKeyException {
-        Field idField = ReflectionManager.getIdField(objectClass);
+    private ReflectivePersistenceManager(ConnectionProvider connectionProvider, boolean ownsConnectionProvider) {
+        this.connectionProvider = connectionProvider;
+        this.ownsConnectionProvider = ownsConnectionProvider;
+        this.transactions = new TransactionContext(connectionProvider, new TransactionContext.Synchronization() {
+            @Override
+            public void begun() {
+                identityMap.begin();
+                cache.begin();
+            }
 
-        if(idField == null){
-            throw new PrimaryKeyException("Entity (" + objectClass.getName() +
-                    ") does not have field with Id annotation.");
-        }
+            @Override
+            public void committed() {
+                identityMap.commit();
+                cache.commit();
+            }
 
-        if(idField.getType() != long.class){
-            throw new PrimaryKeyException("Field (" + idField.getName() + ") with Id annotation must be long.");
-        }
+            @Override
+            public void rolledBack(boolean savepoint, List<Object> inserted) {
+                // Rows of the inserted entities are gone, they are unsaved again
+                EntityMetadata.resetIds(inserted);
+                if (savepoint) {
+                    identityMap.clear();
+                    identityMap.forgetInserted(inserted);
+                } else {
+                    identityMap.rollback();
+                }
+                cache.rollback(savepoint);
+            }
+        });
+    }
 
+    public ConnectionProvider getConnectionProvider() {
+        return connectionProvider;
     }
 
-    private void manyToOneAnnotationCheck(@NotNull Class<?> objectClass)
-            throws MissingAnnotationException, PrimaryKeyException {
-        for(Field field: objectClass.getDeclaredFields()){
-            Annotation manyToOneAnnotation = field.getDeclaredAnnotation(ManyToOne.class);
-            if(manyToOneAnnotation != null) {
-                Class<?> referenceType = field.getType();
-                entityAnnotationCheck(referenceType);
-                idAnnotationCheck(referenceType);
-            }
+    public PersistenceListener getListener() {
+        return connectionProvider.getListener();
+    }
+
+    /**
+     * Observe statements and operations of the manager, see {@link PersistenceListener}.
+     */
+    public void setListener(PersistenceListener listener) {
+        connectionProvider.setListener(listener);
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return connectionProvider.getSlowQueryLog();
+    }
+
+    /**
+     * Report statements slower than the threshold of the log, <code>null</code> to disable it.
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        connectionProvider.setSlowQueryLog(slowQueryLog);
+    }
+
+    public IdentityMap getIdentityMap() {
+        return identityMap;
+    }
+
+    /**
+     * @return number of rows fetched at once by streams, 0 for the driver default
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if(fetchSize < 0){
+            throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
         }
+        this.fetchSize = fetchSize;
     }
 
+
     private String getGeneratedSqlFromFile() throws IOException {
         InputStream inputStream = ClassLoader.getSystemResourceAsStream("createTable.sql");
 
@@ -74,8 +126,6 @@ public class ReflectivePersistenceManager implements PersistenceManager {
 
         String fileContent = stringBuilder.toString().trim();
 
-        System.out.println(fileContent);
-
         inputStream.close();
         inputStreamReader.close();
         reader.close();
@@ -88,331 +138,806 @@ public class ReflectivePersistenceManager implements PersistenceManager {
         try {
             String sqlCommands = getGeneratedSqlFromFile();
 
-            Statement statement = connection.createStatement();
             for (String sql : sqlCommands.split(";")) {
-                statement.execute(sql);
+                if(!sql.isBlank()){
+                    execute(sql);
+                }
             }
-            statement.close();
         } catch (SQLException | IOException e) {
             throw new PersistenceException(e);
         }
 
     }
 
-    private Map<String, Object> getMapOfValues(ResultSet resultSet) throws SQLException {
-        Map<String, Object> map = new HashMap<>();
-
+    private ColumnMetadata[] mapColumns(EntityMetadata metadata, ResultSet resultSet) throws SQLException {
         ResultSetMetaData metaData = resultSet.getMetaData();
+        ColumnMetadata[] mapping = new ColumnMetadata[metaData.getColumnCount()];
 
-        for (int i = 1; i <= metaData.getColumnCount(); i++) {
-            Object value = resultSet.getObject(i);
-            String name = metaData.getColumnName(i);
+        for (int i = 0; i < mapping.length; i++) {
+            mapping[i] = metadata.getColumn(metaData.getColumnName(i + 1));
+        }
 
-            map.put(name, value);
+        return mapping;
+    }
+
+    /**
+     * Values of one row, read before the eager references of its chunk are loaded.
+     *
+     * @param entity     hydrated mutable entity, <code>null</code> for immutable entities and empty rows
+     * @param values     values of an immutable entity by column index, see {@link #extractValuesFromResultSet}
+     * @param references ids of eager references by column index
+     */
+    private record Row(Object entity, Object[] values, long[] references) {
+    }
+
+    private Row readRow(EntityMetadata metadata, ColumnMetadata[] mapping, ResultSet resultSet)
+            throws SQLException, IllegalAccessException, InstantiationException {
+        long[] references = new long[metadata.getAllColumns().length];
+        if(metadata.isImmutable()){
+            return new Row(null, extractValuesFromResultSet(metadata, mapping, resultSet, references), references);
         }
+        return new Row(extractObjectFromResultSet(metadata, mapping, resultSet, references), null, references);
+    }
 
-        return map;
+    /**
+     * Create the entities of the read rows, or take the instances already known for them.
+     * Eager references of all new entities are loaded with one query per referenced type and chunk of ids.
+     *
+     * @param generation {@link EntityCache#generation()} captured before the rows were loaded
+     */
+    private <T> List<T> complete(EntityMetadata metadata, List<Row> rows, long generation) {
+        List<T> list = new ArrayList<>(rows.size());
+        List<T> loaded = new ArrayList<>();
+        if(metadata.isImmutable()){
+            List<Object[]> values = rows.stream().map(Row::values).toList();
+            List<long[]> references = rows.stream().map(Row::references).toList();
+            for (Object entity : createImmutables(metadata, values, references)) {
+                T known = register(metadata, (T) entity);
+                list.add(known);
+                if(known == entity && known != null){
+                    loaded.add(known);
+                }
+            }
+        } else {
+            List<long[]> references = new ArrayList<>();
+            for (Row row : rows) {
+                T entity = (T) row.entity();
+                T known = register(metadata, entity);
+                list.add(known);
+                if(known == entity && known != null){
+                    loaded.add(entity);
+                    references.add(row.references());
+                }
+            }
+            resolveReferences(metadata, loaded, references);
+        }
+        loaded(metadata, loaded, generation);
+        return list;
     }
 
-    private void updateMapOfValues(Class<?> type, Map<String, Object> valuesMap, List<String> fieldNamesWithForeignKeys) throws NoSuchFieldException, NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
-        for (String fieldName : fieldNamesWithForeignKeys) {
-            Field field = type.getDeclaredField(fieldName);
-            Class<?> typeOfField = field.getType();
-            Object value = valuesMap.get(fieldName);
+    /**
+     * Hydrate the current row of a mutable entity. Eager references are not loaded, their ids
+     * are stored into <code>references</code> by column index and resolved by {@link #resolveReferences}.
+     */
+    private Object extractObjectFromResultSet(EntityMetadata metadata, ColumnMetadata[] mapping, ResultSet resultSet,
+                                              long[] references)
+            throws SQLException, IllegalAccessException, InstantiationException {
+        Object object = metadata.newInstance();
+        boolean empty = true;
+
+        for (int i = 0; i < mapping.length; i++) {
+            ColumnMetadata column = mapping[i];
+            if(column == null){
+                continue;
+            }
+
+            if(!column.isManyToOne()){
+                empty &= !column.read(object, resultSet, i + 1);
+                continue;
+            }
 
-            if(value == null){
-                valuesMap.put(fieldName, null);
+            long id = resultSet.getLong(i + 1);
+            if(resultSet.wasNull()){
                 continue;
             }
+            empty = false;
+            if(column.getFetchType() != FetchType.LAZY){
+                references[column.getIndex()] = id;
+                continue;
+            }
+            column.set(object, createProxy(column.getTargetEntity(), id));
+        }
 
-            Annotation annotation = field.getAnnotation(ManyToOne.class);
-            FetchType fetchType = (FetchType) annotation.getClass().getMethod("fetch").invoke(annotation);
-            if(fetchType.equals(FetchType.LAZY)){
-               Class<?> targetClass = (Class<?>) annotation.getClass().getMethod("targetEntity").invoke(annotation);
-               long id = (int) valuesMap.get(fieldName);
+        return empty ? null : object;
+    }
 
-               Object proxy = ProxyManager.createProxy(connection, targetClass, id);
-               valuesMap.put(fieldName, proxy);
+    /**
+     * Read the current row for {@link EntityMetadata#newInstance(Object[])} with getters of the field types.
+     * Eager references are not loaded, their ids are stored into <code>references</code> by column index.
+     *
+     * @return values by column index, <code>null</code> if all of them are <code>null</code>
+     */
+    private Object[] extractValuesFromResultSet(EntityMetadata metadata, ColumnMetadata[] mapping, ResultSet resultSet,
+                                                long[] references)
+            throws SQLException, IllegalAccessException, InstantiationException {
+        Object[] values = new Object[metadata.getAllColumns().length];
+        boolean empty = true;
+
+        for (int i = 0; i < mapping.length; i++) {
+            ColumnMetadata column = mapping[i];
+            if(column == null){
+                continue;
+            }
 
-               continue;
+            if(!column.isManyToOne()){
+                values[column.getIndex()] = column.readValue(resultSet, i + 1);
+                empty &= values[column.getIndex()] == null;
+                continue;
             }
 
-            Optional<?> optional = get(typeOfField, (int) value);
-            if(optional.isEmpty()){
-                valuesMap.put(fieldName, null);
-            } else {
-                valuesMap.put(fieldName, optional.get());
+            long id = resultSet.getLong(i + 1);
+            if(resultSet.wasNull()){
+                continue;
+            }
+            empty = false;
+            if(column.getFetchType() != FetchType.LAZY){
+                references[column.getIndex()] = id;
+                continue;
             }
+            values[column.getIndex()] = createProxy(column.getTargetEntity(), id);
         }
+
+        return empty ? null : values;
     }
 
-    private Object extractObjectFromResultSet(Class<?> type, ResultSet resultSet) throws SQLException, NoSuchFieldException, IllegalAccessException, InvocationTargetException, InstantiationException, NoSuchMethodException {
-        Map<String, Object> valuesMap = getMapOfValues(resultSet);
+    /**
+     * Create immutable entities of the read rows by a single constructor call each. Eager references
+     * of all rows are loaded before, with one query per referenced type and chunk of ids.
+     * Empty rows give <code>null</code>.
+     */
+    private List<Object> createImmutables(EntityMetadata metadata, List<Object[]> rows, List<long[]> references) {
+        resolveReferences(metadata, references, (row, column, target) -> {
+            if(rows.get(row) != null){
+                rows.get(row)[column.getIndex()] = target;
+            }
+        });
+        List<Object> entities = new ArrayList<>(rows.size());
+        for (Object[] values : rows) {
+            entities.add(values == null ? null : metadata.newInstance(values));
+        }
+        return entities;
+    }
 
-        List<String> fieldNamesWithForeignKeys = ReflectionManager.getNameOfFieldsWithForeignKey(type);
-        updateMapOfValues(type, valuesMap, fieldNamesWithForeignKeys);
+    @FunctionalInterface
+    private interface ReferenceTarget {
+        void set(int row, ColumnMetadata column, Object target);
+    }
 
-        if(valuesMap.values().stream().allMatch(Objects::isNull)){
-            return null;
-        }
+    /**
+     * Load eager references of all entities with one query per referenced type and chunk of ids.
+     */
+    private void resolveReferences(EntityMetadata metadata, List<?> entities, List<long[]> references) {
+        resolveReferences(metadata, references, (row, column, target) -> {
+            Object entity = entities.get(row);
+            if(entity != null){
+                column.set(entity, target);
+            }
+        });
+    }
 
-        Constructor<?> constructor = type.getConstructor();
-        Object object = constructor.newInstance();
+    private void resolveReferences(EntityMetadata metadata, List<long[]> references, ReferenceTarget target) {
+        for (ColumnMetadata column : metadata.getForeignKeys()) {
+            if(column.getFetchType() == FetchType.LAZY){
+                continue;
+            }
 
-        ReflectionManager.setObjectFields(object, valuesMap);
+            Set<Long> ids = new HashSet<>();
+            for (long[] row : references) {
+                if(row[column.getIndex()] != 0){
+                    ids.add(row[column.getIndex()]);
+                }
+            }
+            if(ids.isEmpty()){
+                continue;
+            }
 
-        return object;
+            Map<Long, ?> targets = findByIds(column.getTargetEntity(), ids);
+            for (int i = 0; i < references.size(); i++) {
+                long id = references.get(i)[column.getIndex()];
+                if(id != 0){
+                    target.set(i, column, targets.get(id));
+                }
+            }
+        }
     }
 
-    @Override
-    public <T> Optional<T> get(Class<T> type, long id){
-        try {
-            entityAnnotationCheck(type);
-            idAnnotationCheck(type);
-            manyToOneAnnotationCheck(type);
-
-            String name = ReflectionManager.getTableName(type);
-            Field primaryKeyField = ReflectionManager.getIdField(type);
-            String select = String.format("SELECT * FROM '%s' WHERE %s = ?;", name, ReflectionManager.getFieldName(primaryKeyField));
+    private Object createProxy(Class<?> type, long id) throws InstantiationException, IllegalAccessException {
+        return ProxyManager.createProxy(this::loadProxied, identityMap, type, id);
+    }
 
-            PreparedStatement preparedStatement = connection.prepareStatement(select);
-            preparedStatement.setLong(1, id);
+    private Object loadProxied(Class<?> type, long id) {
+        connectionProvider.getListener().lazyLoaded(type, id);
+        return find(type, id).orElse(null);
+    }
 
-            ResultSet resultSet = preparedStatement.executeQuery();
+    private Object resolveReference(ColumnMetadata column, long id) {
+        if(column.getFetchType() == FetchType.LAZY){
+            try {
+                return createProxy(column.getTargetEntity(), id);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new PersistenceException(e);
+            }
+        }
+        return find(column.getTargetEntity(), id).orElse(null);
+    }
 
-            if (resultSet.isClosed()) {
-                return Optional.empty();
+    /**
+     * Remember persisted values of freshly loaded entities for dirty checking
+     * and store the entities into the second-level cache of their type, if it is cached.
+     *
+     * @param generation {@link EntityCache#generation()} captured before the entities were loaded
+     */
+    private void loaded(EntityMetadata metadata, List<?> entities, long generation) {
+        for (Object entity : entities) {
+            if(entity == null){
+                continue;
             }
+            long id = metadata.getId(entity);
+            identityMap.setSnapshot(metadata.getType(), id, entity, metadata.snapshot(entity));
+            cache.put(metadata.getType(), id, entity, generation);
+        }
+    }
 
-            T object = (T) extractObjectFromResultSet(type, resultSet);
+    private <T> T fromCache(Class<T> type, long id, Object[] row) {
+        T entity = EntityCache.fromRow(type, row, this::resolveReference);
+        T known = identityMap.putIfAbsent(type, id, entity);
+        if(known == entity){
+            identityMap.setSnapshot(type, id, entity, EntityMetadata.of(type).snapshot(entity));
+        }
+        return known;
+    }
 
-            resultSet.close();
-            preparedStatement.close();
+    private void invalidateCached(EntityMetadata metadata, long id) {
+        cache.invalidate(metadata.getType(), id);
+    }
 
-            if(object == null){
-                return Optional.empty();
-            } else {
-                return Optional.of(object);
-            }
+    private void bindColumns(PreparedStatement statement, EntityMetadata metadata, Object entity) throws SQLException {
+        bindColumns(statement, 0, metadata, entity);
+    }
 
-        } catch (NoSuchFieldException | InvocationTargetException | IllegalAccessException | InstantiationException |
-                 NoSuchMethodException | SQLException | PrimaryKeyException | MissingAnnotationException e) {
-            throw new PersistenceException(e);
+    /**
+     * Bind the columns of the entity, starting at parameter <code>offset + 1</code>.
+     */
+    private void bindColumns(PreparedStatement statement, int offset, EntityMetadata metadata, Object entity)
+            throws SQLException {
+        int index = offset + 1;
+        for (ColumnMetadata column : metadata.getColumns()) {
+            bindColumn(statement, column, entity, index++);
+        }
+    }
+
+    private void bindColumn(PreparedStatement statement, ColumnMetadata column, Object entity, int index)
+            throws SQLException {
+        if(!column.isManyToOne()){
+            column.bind(entity, statement, index);
+            return;
+        }
+        Object reference = column.get(entity);
+        if(reference != null){
+            statement.setLong(index, ProxyManager.getId(reference));
+        } else {
+            statement.setNull(index, Types.BIGINT);
         }
     }
 
     @Override
-    public <T> List<T> getAll(Class<T> type) {
-        try {
-            entityAnnotationCheck(type);
-            idAnnotationCheck(type);
-            manyToOneAnnotationCheck(type);
+    public <T> Optional<T> get(Class<T> type, long id){
+        return Observations.observe(connectionProvider, Operation.GET, type,
+                () -> find(type, id), entity -> entity.isPresent() ? 1 : 0);
+    }
 
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(String.format("SELECT * FROM '%s'", ReflectionManager.getTableName(type)));
+    private <T> Optional<T> find(Class<T> type, long id){
+        T known = identityMap.get(type, id);
+        if(known != null){
+            return Optional.of(known);
+        }
 
-            if(resultSet.isClosed()){
-                return Collections.emptyList();
-            }
+        Object[] row = cache.get(type, id);
+        if(row != null){
+            return Optional.of(fromCache(type, id, row));
+        }
 
-            List<T> list = new ArrayList<>();
+        EntityMetadata metadata = EntityMetadata.of(type);
 
-            while (resultSet.next()){
-                T obj = (T) extractObjectFromResultSet(type, resultSet);
-                list.add(obj);
-            }
+        try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getSelectByIdSql())) {
+            PreparedStatement preparedStatement = cached.get();
+            preparedStatement.setLong(1, id);
 
-            resultSet.close();
-            return list;
-        } catch (SQLException | NoSuchFieldException | InvocationTargetException | IllegalAccessException |
-                 NoSuchMethodException | InstantiationException | PrimaryKeyException | MissingAnnotationException e) {
+            List<T> list = getList(metadata, preparedStatement);
+            return list.isEmpty() ? Optional.empty() : Optional.ofNullable(list.get(0));
+        } catch (IllegalAccessException | InstantiationException | SQLException e) {
             throw new PersistenceException(e);
         }
-
-
     }
 
     @Override
-    public <T> List<T> getBy(Class<T> type, String fieldName, Object value) {
-        try {
-            entityAnnotationCheck(type);
-            idAnnotationCheck(type);
-            manyToOneAnnotationCheck(type);
-
-            String sql;
+    public <T> Map<Long, T> getByIds(Class<T> type, Collection<Long> ids) {
+        return Observations.observe(connectionProvider, Operation.GET_BY_IDS, type,
+                () -> findByIds(type, ids), Map::size);
+    }
 
-            if(value == null){
-                sql = String.format("SELECT * FROM '%s' WHERE %s is ?",
-                        ReflectionManager.getTableName(type), fieldName);
+    private <T> Map<Long, T> findByIds(Class<T> type, Collection<Long> ids) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+        Map<Long, T> entities = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            T known = identityMap.get(type, id);
+            Object[] row;
+            if(known != null){
+                entities.put(id, known);
+            } else if((row = cache.get(type, id)) != null){
+                entities.put(id, fromCache(type, id, row));
             } else {
-                sql = String.format("SELECT * FROM '%s' WHERE %s = ?",
-                        ReflectionManager.getTableName(type), fieldName);
+                missing.add(id);
             }
+        }
+        if(missing.isEmpty()){
+            return entities;
+        }
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setObject(1, value);
+        try {
+            entities.putAll(BatchLoader.load(connectionProvider::prepareStatement, metadata.getSelectByIdsSql(), missing, statement -> {
+                try {
+                    return getList(metadata, statement);
+                } catch (IllegalAccessException | InstantiationException e) {
+                    throw new PersistenceException(e);
+                }
+            }, metadata::getId));
+            return entities;
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+    }
 
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<T> list = new ArrayList<>();
+    /**
+     * @return the instance already known for the row of the loaded entity, or the entity itself
+     */
+    private <T> T register(EntityMetadata metadata, T entity) {
+        if(entity == null){
+            return null;
+        }
+        return identityMap.putIfAbsent((Class<T>) metadata.getType(), metadata.getId(entity), entity);
+    }
 
+    /**
+     * Read all rows before the entities are completed, so that eager references of all of them
+     * are loaded together.
+     */
+    private <T> List<T> getList(EntityMetadata metadata, PreparedStatement statement)
+            throws SQLException, IllegalAccessException, InstantiationException {
+        long generation = EntityCache.generation();
+        List<Row> rows = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            ColumnMetadata[] mapping = mapColumns(metadata, resultSet);
             while (resultSet.next()){
-                T obj = (T) extractObjectFromResultSet(type, resultSet);
-                list.add(obj);
+                rows.add(readRow(metadata, mapping, resultSet));
             }
-
-            resultSet.close();
-            return list;
-
-        } catch (SQLException | NoSuchFieldException | InvocationTargetException | IllegalAccessException |
-                 InstantiationException | NoSuchMethodException | PrimaryKeyException | MissingAnnotationException e) {
-            throw new PersistenceException(e);
         }
+        return complete(metadata, rows, generation);
     }
 
-    private long saveObject(Object entity, Map<String, Object> fieldNamesWithValuesExceptPrimaryKey)
-            throws SQLException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-        String fieldNames = String.join(",", fieldNamesWithValuesExceptPrimaryKey.keySet());
-        String placesForValues = String.join(",", fieldNamesWithValuesExceptPrimaryKey
-                .values()
-                .stream()
-                .map(obj -> "?")
-                .toList());
-
-        String sql = String.format("INSERT INTO '%s' (%s) VALUES (%s)",
-                ReflectionManager.getTableName(entity.getClass()), fieldNames, placesForValues);
-
-        PreparedStatement statement = connection.prepareStatement(sql);
+    @Override
+    public <T> List<T> getAll(Class<T> type) {
+        EntityMetadata metadata = EntityMetadata.of(type);
 
-        int index = 1;
-        Collection<Object> values = fieldNamesWithValuesExceptPrimaryKey.values();
+        return Observations.observe(connectionProvider, Operation.GET_ALL, type, () -> {
+            try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getSelectAllSql())) {
+                return this.<T>getList(metadata, cached.get());
+            } catch (SQLException | IllegalAccessException | InstantiationException e) {
+                throw new PersistenceException(e);
+            }
+        }, List::size);
+    }
 
-        for (Object value : values) {
-            statement.setObject(index, value);
-            index++;
-        }
+    @Override
+    public <T> List<T> getBy(Class<T> type, String fieldName, Object value) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+
+        return Observations.observe(connectionProvider, Operation.GET_BY, type, () -> {
+            try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getSelectBySql(fieldName, value))) {
+                cached.get().setObject(1, value);
+                return this.<T>getList(metadata, cached.get());
+            } catch (SQLException | IllegalAccessException | InstantiationException e) {
+                throw new PersistenceException(e);
+            }
+        }, List::size);
+    }
 
-        statement.execute();
+    @Override
+    public <T> Page<T> page(Class<T> type, String column, String continuationToken, int limit) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+
+        return Observations.observe(connectionProvider, Operation.PAGE, type,
+                () -> KeysetPagination.<T>page(metadata, column, continuationToken, limit, (clause, parameters) -> {
+                    try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getSelectAllSql() + clause)) {
+                        PreparedStatement statement = cached.get();
+                        for (int i = 0; i < parameters.size(); i++) {
+                            statement.setObject(i + 1, parameters.get(i));
+                        }
+                        return getList(metadata, statement);
+                    } catch (SQLException | IllegalAccessException | InstantiationException e) {
+                        throw new PersistenceException(e);
+                    }
+                }),
+                page -> page.getItems().size());
+    }
 
-        ResultSet resultSet = statement.getGeneratedKeys();
+    /**
+     * Stream entities in chunks of the fetch size. Eager references are resolved for each chunk
+     * with one query per referenced type, see {@link EntityCursor}.
+     */
+    private <T> Stream<T> stream(EntityMetadata metadata, CachedStatement cached) {
+        ColumnMetadata[][] mapping = new ColumnMetadata[1][];
+        long generation = EntityCache.generation();
+        return EntityCursor.<Row, T>stream(cached, fetchSize, resultSet -> {
+            if(mapping[0] == null){
+                mapping[0] = mapColumns(metadata, resultSet);
+            }
+            try {
+                return readRow(metadata, mapping[0], resultSet);
+            } catch (IllegalAccessException | InstantiationException e) {
+                throw new PersistenceException(e);
+            }
+        }, rows -> complete(metadata, rows, generation));
+    }
 
-        long newId = resultSet.getLong(1);
-        ReflectionManager.setObjectPrimaryKey(entity, newId);
+    @Override
+    public <T> Stream<T> streamAll(Class<T> type) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+
+        return Observations.observeStream(connectionProvider, type, () -> {
+            try {
+                return stream(metadata, connectionProvider.prepareStatement(metadata.getSelectAllSql()));
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
+            }
+        });
+    }
 
-        resultSet.close();
-        return newId;
+    @Override
+    public <T> Stream<T> streamBy(Class<T> type, String fieldName, Object value) {
+        EntityMetadata metadata = EntityMetadata.of(type);
+
+        return Observations.observeStream(connectionProvider, type, () -> {
+            try {
+                CachedStatement cached = connectionProvider.prepareStatement(metadata.getSelectBySql(fieldName, value));
+                try {
+                    cached.get().setObject(1, value);
+                } catch (SQLException e) {
+                    cached.close();
+                    throw e;
+                }
+                return stream(metadata, cached);
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
+            }
+        });
     }
 
-    private void updateObject(Object entity, long id, Map<String, Object> fieldNamesWithValuesExceptPrimaryKey)
-            throws SQLException, InvocationTargetException, NoSuchMethodException, IllegalAccessException {
+    private long saveObject(EntityMetadata metadata, Object entity) throws SQLException {
+        if(metadata.isImmutable()){
+            identityMap.checkNotInserted(entity);
+        }
+        try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getInsertSql())) {
+            PreparedStatement statement = cached.get();
+
+            bindColumns(statement, metadata, entity);
 
-        Field primaryKeyField = ReflectionManager.getIdField(entity.getClass());
+            statement.execute();
 
-        if(primaryKeyField == null){
-            throw new PersistenceException("Field with @Id annotation is missing");
+            try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                long newId = resultSet.getLong(1);
+                if(metadata.isImmutable()){
+                    identityMap.putInserted(entity, newId);
+                } else {
+                    metadata.setId(entity, newId);
+                    identityMap.put(metadata.getType(), newId, entity);
+                    identityMap.setSnapshot(metadata.getType(), newId, entity, metadata.snapshot(entity));
+                }
+                transactions.recordInsert(entity);
+                invalidateCached(metadata, newId);
+                return newId;
+            }
         }
+    }
 
-        List<String> list = fieldNamesWithValuesExceptPrimaryKey
-                .entrySet()
-                .stream()
-                .map(entry -> String.format("%s = ?", entry.getKey()))
-                .toList();
-
-        String sql = String.format("UPDATE '%s' SET %s WHERE %s = ?",
-                ReflectionManager.getTableName(entity.getClass()), String.join(",", list), ReflectionManager.getFieldName(primaryKeyField));
+    /**
+     * Update only the columns changed since the entity was loaded or saved, nothing if none changed.
+     * All columns are updated if the persisted values are not known.
+     */
+    private void updateObject(EntityMetadata metadata, Object entity, long id) throws SQLException {
+        Object[] values = metadata.snapshot(entity);
+        int[] changed = DirtyChecking.changedColumns(identityMap.getSnapshot(metadata.getType(), id, entity), values);
+        if(changed != null && changed.length == 0){
+            return;
+        }
 
-        PreparedStatement statement = connection.prepareStatement(sql);
+        String sql = changed == null ? metadata.getUpdateSql() : metadata.getUpdateSql(changed);
+        try (CachedStatement cached = connectionProvider.prepareStatement(sql)) {
+            PreparedStatement statement = cached.get();
 
-        int index = 1;
-        Collection<Object> values = fieldNamesWithValuesExceptPrimaryKey.values();
+            if(changed == null){
+                bindColumns(statement, metadata, entity);
+                statement.setLong(metadata.getColumns().size() + 1, id);
+            } else {
+                for (int i = 0; i < changed.length; i++) {
+                    bindColumn(statement, metadata.getColumns().get(changed[i]), entity, i + 1);
+                }
+                statement.setLong(changed.length + 1, id);
+            }
 
-        for (Object value : values) {
-            statement.setObject(index, value);
-            index++;
+            statement.execute();
         }
 
-        statement.setLong(index, id);
-
-        statement.execute();
-        statement.close();
+        identityMap.put(metadata.getType(), id, entity);
+        identityMap.setSnapshot(metadata.getType(), id, entity, values);
+        invalidateCached(metadata, id);
     }
 
     @Override
     public long save(Object entity) {
+        return Observations.observe(connectionProvider, Operation.SAVE, EntityMetadata.of(entity).getType(),
+                () -> saveEntity(entity), id -> 1);
+    }
+
+    private long saveEntity(Object entity) {
         try {
-            entityAnnotationCheck(entity.getClass());
-            idAnnotationCheck(entity.getClass());
-            manyToOneAnnotationCheck(entity.getClass());
+            EntityMetadata metadata = EntityMetadata.of(entity);
 
-            long id = (long) ReflectionManager.getObjectPrimaryKey(entity);
+            long id = metadata.getId(entity);
 
-            List<String> fieldNamesOfForeignKey = ReflectionManager.getNameOfFieldsWithForeignKey(entity.getClass());
-            for (String fieldName : fieldNamesOfForeignKey) {
-                Object obj = ReflectionManager.getValueOfFieldByName(entity, fieldName);
+            for (ColumnMetadata column : metadata.getForeignKeys()) {
+                Object obj = column.get(entity);
                 if(obj != null) {
-                    long foreignId = (long) ReflectionManager.getObjectPrimaryKey(obj);
+                    long foreignId = ProxyManager.getId(obj);
                     if (foreignId == 0) {
-                        save(obj);
+                        EntityMetadata.checkUnsavedReference(obj);
+                        saveEntity(obj);
                     }
                 }
             }
 
-
-            Map<String, Object> fieldNamesWithValuesExceptPrimaryKey = ReflectionManager
-                    .getFieldNamesWithValuesExceptPrimaryKey(entity);
-
             if(id == 0){
-                return saveObject(entity, fieldNamesWithValuesExceptPrimaryKey);
+                return saveObject(metadata, entity);
             } else {
-                updateObject(entity, id, fieldNamesWithValuesExceptPrimaryKey);
+                updateObject(metadata, entity, id);
                 return id;
             }
 
-        } catch (IllegalAccessException | SQLException | NoSuchFieldException | MissingAnnotationException |
-                 PrimaryKeyException | InvocationTargetException | NoSuchMethodException e) {
+        } catch (SQLException e) {
             throw new PersistenceException(e);
         }
     }
 
     @Override
-    public void delete(Object entity){
+    public void saveAll(Collection<?> entities) {
+        Observations.observe(connectionProvider, Operation.SAVE_ALL, null, entities.size(), () -> {
+            try {
+                atomically(() -> saveGroups(entities));
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
+            }
+        });
+    }
+
+    /**
+     * Save entities grouped by their type. Unsaved references of each group
+     * are saved before the group itself, so rows are inserted in dependency order.
+     */
+    private void saveGroups(Collection<?> entities) throws SQLException {
+        Set<Object> seen = identitySet();
+        Map<EntityMetadata, List<Object>> entitiesByType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            if(seen.add(entity)){
+                entitiesByType.computeIfAbsent(EntityMetadata.of(entity), type -> new ArrayList<>()).add(entity);
+            }
+        }
+
+        for (Map.Entry<EntityMetadata, List<Object>> entry : entitiesByType.entrySet()) {
+            saveGroup(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void saveGroup(EntityMetadata metadata, List<Object> entities) throws SQLException {
+        List<Object> references = new ArrayList<>();
+        for (ColumnMetadata column : metadata.getForeignKeys()) {
+            for (Object entity : entities) {
+                Object reference = column.get(entity);
+                if(reference != null && ProxyManager.getId(reference) == 0){
+                    EntityMetadata.checkUnsavedReference(reference);
+                    references.add(reference);
+                }
+            }
+        }
+        if(!references.isEmpty()){
+            saveGroups(references);
+        }
+
+        List<Object> inserts = new ArrayList<>();
+        try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getUpdateSql())) {
+            PreparedStatement statement = cached.get();
+            boolean batched = false;
+
+            for (Object entity : entities) {
+                long id = metadata.getId(entity);
+                if(id == 0){
+                    if(metadata.isImmutable()){
+                        identityMap.checkNotInserted(entity);
+                    }
+                    inserts.add(entity);
+                    continue;
+                }
+                Object[] values = metadata.snapshot(entity);
+                int[] changed = DirtyChecking.changedColumns(identityMap.getSnapshot(metadata.getType(), id, entity), values);
+                if(changed != null && changed.length == 0){
+                    continue;
+                }
+                bindColumns(statement, metadata, entity);
+                statement.setLong(metadata.getColumns().size() + 1, id);
+                statement.addBatch();
+                batched = true;
+                identityMap.put(metadata.getType(), id, entity);
+                identityMap.setSnapshot(metadata.getType(), id, entity, values);
+                invalidateCached(metadata, id);
+            }
+
+            if(batched){
+                statement.executeBatch();
+            }
+        }
+
+        if(inserts.isEmpty()){
+            return;
+        }
+
+        metadata.getBatchInserter().insert(connectionProvider::prepareStatement, inserts,
+                (statement, offset, entity) -> bindColumns(statement, offset, metadata, entity),
+                (entity, id) -> {
+                    if(metadata.isImmutable()){
+                        identityMap.putInserted(entity, id);
+                    } else {
+                        metadata.setId(entity, id);
+                        identityMap.put(metadata.getType(), id, entity);
+                        identityMap.setSnapshot(metadata.getType(), id, entity, metadata.snapshot(entity));
+                    }
+                    transactions.recordInsert(entity);
+                    invalidateCached(metadata, id);
+                });
+    }
+
+    private static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private void atomically(SqlAction action) throws SQLException {
+        transactions.begin(Propagation.NESTED);
         try {
-            entityAnnotationCheck(entity.getClass());
-            idAnnotationCheck(entity.getClass());
-            manyToOneAnnotationCheck(entity.getClass());
+            action.run();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                transactions.rollback();
+            } catch (SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            throw e;
+        }
+        transactions.commit();
+    }
 
-            long id  = (long) ReflectionManager.getObjectPrimaryKey(entity);
-            Field primaryKeyField = ReflectionManager.getIdField(entity.getClass());
+    private void execute(String sql) throws SQLException {
+        try (CachedStatement cached = connectionProvider.prepareStatement(sql)) {
+            cached.get().execute();
+        }
+    }
 
+    @Override
+    public void delete(Object entity){
+        EntityMetadata metadata = EntityMetadata.of(entity);
+
+        Observations.observe(connectionProvider, Operation.DELETE, metadata.getType(), 1, () -> {
+            try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getDeleteSql())) {
+                PreparedStatement preparedStatement = cached.get();
+                long id = persistedId(metadata, entity);
+                preparedStatement.setLong(1, id);
+
+                preparedStatement.execute();
+                identityMap.remove(metadata.getType(), id);
+                invalidateCached(metadata, id);
+            } catch (SQLException e){
+                throw new PersistenceException(e);
+            }
+        });
+    }
 
-            String className = ReflectionManager.getTableName(entity.getClass());
+    @Override
+    public void deleteAll(Collection<?> entities) {
+        Map<Class<?>, List<Object>> entitiesByType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            entitiesByType.computeIfAbsent(EntityMetadata.of(entity).getType(), type -> new ArrayList<>()).add(entity);
+        }
+        List<Class<?>> types = EntityMetadata.orderByDependencies(entitiesByType.keySet());
+        Collections.reverse(types);
+
+        Observations.observe(connectionProvider, Operation.DELETE_ALL, null, entities.size(), () -> {
+            try {
+                atomically(() -> {
+                    for (Class<?> type : types) {
+                        deleteGroup(EntityMetadata.of(type), entitiesByType.get(type));
+                    }
+                });
+            } catch (SQLException e) {
+                throw new PersistenceException(e);
+            }
+        });
+    }
 
-            String sql = String.format("DELETE FROM '%s' WHERE %s=?;", className, ReflectionManager.getFieldName(primaryKeyField));
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setLong(1, id);
+    private void deleteGroup(EntityMetadata metadata, List<Object> entities) throws SQLException {
+        try (CachedStatement cached = connectionProvider.prepareStatement(metadata.getDeleteSql())) {
+            PreparedStatement statement = cached.get();
+            for (Object entity : entities) {
+                statement.setLong(1, persistedId(metadata, entity));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
 
-            preparedStatement.execute();
-            preparedStatement.close();
-        } catch (IllegalAccessException | SQLException | PrimaryKeyException | MissingAnnotationException |
-                 InvocationTargetException | NoSuchMethodException e){
-            throw new PersistenceException(e);
+        for (Object entity : entities) {
+            long id = persistedId(metadata, entity);
+            identityMap.remove(metadata.getType(), id);
+            invalidateCached(metadata, id);
         }
     }
 
+    /**
+     * @return id of the row of the entity, for an inserted immutable entity the id it got when inserted
+     */
+    private long persistedId(EntityMetadata metadata, Object entity) {
+        long id = metadata.getId(entity);
+        return id == 0 && metadata.isImmutable() ? identityMap.getInsertedId(entity) : id;
+    }
+
     @Override
     public void startTransaction() throws SQLException {
-        connection.createStatement().execute("BEGIN TRANSACTION;");
-        System.out.println("Transaction was started.");
+        transactions.begin(Propagation.REQUIRED);
+    }
+
+    @Override
+    public void startTransaction(Propagation propagation) throws SQLException {
+        transactions.begin(propagation);
     }
 
     @Override
     public void commitTransaction() throws SQLException {
-        connection.createStatement().execute("COMMIT;");
-        System.out.println("Transaction was successful. COMMIT command was applied.");
+        transactions.commit();
     }
 
     @Override
     public void rollbackTransaction() throws SQLException {
-        connection.createStatement().execute("ROLLBACK;");
-        System.out.println("Transaction was unsuccessful. ROLLBACK command was applied.");
+        transactions.rollback();
+    }
+
+    /**
+     * Close the connection provider, if the manager created it.
+     */
+    @Override
+    public void close() {
+        if(!ownsConnectionProvider){
+            return;
+        }
+        try {
+            connectionProvider.close();
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
     }
 }
@@ -0,0 +1,12 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+    /**
+     * Map the current row of the result set. Implementations must not move the cursor.
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,47 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provider of one connection, leased by one thread at a time.
+ * Other threads wait until the lease is released, so a manager using it may be shared by threads.
+ * The connection is not closed by the provider.
+ */
+public class SingleConnectionProvider extends ConnectionProvider {
+    private final StatementCache statementCache;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SingleConnectionProvider(Connection connection) {
+        this(connection, StatementCache.DEFAULT_CAPACITY);
+    }
+
+    public SingleConnectionProvider(Connection connection, int statementCacheCapacity) {
+        this.statementCache = new StatementCache(connection, statementCacheCapacity);
+    }
+
+    @Override
+    public ConnectionLease acquire(boolean write) {
+        lock.lock();
+        return new ConnectionLease(this, statementCache, write, null);
+    }
+
+    @Override
+    void release(ConnectionLease lease) {
+        lock.unlock();
+    }
+
+    public Connection getConnection() {
+        return statementCache.getConnection();
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statementCache.close();
+    }
+}
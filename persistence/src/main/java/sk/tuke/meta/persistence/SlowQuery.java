@@ -0,0 +1,69 @@
+package sk.tuke.meta.persistence;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statement which took longer than the threshold of a {@link SlowQueryLog}.
+ */
+public final class SlowQuery {
+    private final String sql;
+    private final List<Object> parameters;
+    private final long nanos;
+    private final List<String> plan;
+
+    SlowQuery(String sql, List<Object> parameters, long nanos, List<String> plan) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.nanos = nanos;
+        this.plan = plan;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return parameters bound to the statement, in order of their indexes
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return time spent executing the statement, without reading its results
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return details of the <code>EXPLAIN QUERY PLAN</code> rows, empty if the plan is not available
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return whether rows are filtered by a <code>WHERE</code> condition, but SQLite scans
+     * a whole table instead of searching an index, so an index is likely missing
+     */
+    public boolean isFullTableScan() {
+        if (!sql.toUpperCase(Locale.ROOT).contains(" WHERE ")) {
+            return false;
+        }
+        for (String detail : plan) {
+            if (detail.startsWith("SCAN ") && !detail.contains(" USING ") && !detail.equals("SCAN CONSTANT ROW")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Slow query took %.3f ms%s: %s %s, plan: %s",
+                nanos / 1e6, isFullTableScan() ? " with a full table scan" : "", sql, parameters, plan);
+    }
+}
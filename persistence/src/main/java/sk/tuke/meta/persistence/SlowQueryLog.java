@@ -0,0 +1,112 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Reports statements taking longer than a threshold together with their parameters and query plan.
+ * <p>
+ * A slow query log is set on the {@link ConnectionProvider}. Parameters of its statements are recorded
+ * while it is set. The plan of each SQL is captured by <code>EXPLAIN QUERY PLAN</code> only once,
+ * when it is slow for the first time, on the connection of the slow statement.
+ * <p>
+ * By default, slow queries are logged as warnings to the <code>sk.tuke.meta.persistence.SlowQueryLog</code>
+ * system logger, which can be routed e.g. to a rotating file by the logging configuration.
+ */
+public class SlowQueryLog {
+    private static final System.Logger LOGGER = System.getLogger(SlowQueryLog.class.getName());
+
+    private final long thresholdNanos;
+    private final Consumer<SlowQuery> handler;
+    private final Map<String, List<String>> plans = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+
+    public SlowQueryLog(long threshold, TimeUnit unit) {
+        this(threshold, unit, SlowQueryLog::log);
+    }
+
+    /**
+     * @param handler called with each slow query by the thread which executed it
+     */
+    public SlowQueryLog(long threshold, TimeUnit unit, Consumer<SlowQuery> handler) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.handler = handler;
+    }
+
+    private static void log(SlowQuery query) {
+        LOGGER.log(System.Logger.Level.WARNING, query.toString());
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * @return number of slow queries reported
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return captured plans by SQL of slow statements
+     */
+    public Map<String, List<String>> getPlans() {
+        return Map.copyOf(plans);
+    }
+
+    boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Describe a slow statement, while its connection is still leased by the current thread.
+     */
+    SlowQuery capture(Connection connection, String sql, List<Object> parameters, long nanos) {
+        List<String> plan = plans.get(sql);
+        if (plan == null) {
+            plan = explain(connection, sql, parameters);
+            plans.put(sql, plan);
+        }
+        return new SlowQuery(sql, parameters, nanos, plan);
+    }
+
+    private static List<String> explain(Connection connection, String sql, List<Object> parameters) {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            List<String> plan = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString("detail"));
+                }
+            }
+            return List.copyOf(plan);
+        } catch (SQLException e) {
+            LOGGER.log(System.Logger.Level.DEBUG, "Query plan is not available: " + sql, e);
+            return List.of();
+        }
+    }
+
+    void report(SlowQuery query) {
+        count.increment();
+        try {
+            handler.accept(query);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Slow query handler failed.", e);
+        }
+    }
+}
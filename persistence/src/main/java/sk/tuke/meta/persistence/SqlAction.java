@@ -0,0 +1,8 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlAction {
+    void run() throws SQLException;
+}
@@ -0,0 +1,146 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of prepared statements of one connection, evicting the least recently used one.
+ * <p>
+ * A statement is handed out to one caller at a time. If the same SQL is requested again
+ * while the cached statement is still in use (e.g. by a recursive load), a temporary
+ * statement is prepared and closed on release.
+ * <p>
+ * The cache is not thread-safe, just like the connection it belongs to.
+ */
+public class StatementCache implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection connection;
+    private final Map<String, CachedStatement> statements;
+    private boolean closed;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                evictions++;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get a prepared statement for the SQL. The statement must be released by
+     * {@link CachedStatement#close()}, preferably using try-with-resources.
+     */
+    public CachedStatement prepare(String sql) throws SQLException {
+        if (closed) {
+            throw new SQLException("Statement cache is closed.");
+        }
+
+        CachedStatement statement = statements.get(sql);
+        if (statement != null && !statement.inUse) {
+            hits++;
+            statement.inUse = true;
+            return statement;
+        }
+
+        misses++;
+        if (statement != null) {
+            return new CachedStatement(this, connection.prepareStatement(sql), false);
+        }
+
+        statement = new CachedStatement(this, connection.prepareStatement(sql), true);
+        statement.inUse = true;
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    void release(CachedStatement statement) throws SQLException {
+        if (!statement.isCached() || statement.evicted || closed) {
+            statement.getStatement().close();
+            return;
+        }
+        statement.inUse = false;
+        statement.getStatement().clearParameters();
+    }
+
+    private void evict(CachedStatement statement) {
+        statement.evicted = true;
+        if (!statement.inUse) {
+            try {
+                statement.getStatement().close();
+            } catch (SQLException ignored) {
+                // the statement is discarded anyway
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Close all cached statements. Statements still in use are closed as well.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        List<SQLException> exceptions = new ArrayList<>();
+        for (CachedStatement statement : statements.values()) {
+            try {
+                statement.getStatement().close();
+            } catch (SQLException e) {
+                exceptions.add(e);
+            }
+        }
+        statements.clear();
+
+        if (!exceptions.isEmpty()) {
+            SQLException exception = exceptions.get(0);
+            exceptions.subList(1, exceptions.size()).forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package sk.tuke.meta.persistence;
+
+import java.sql.SQLException;
+
+/**
+ * Source of prepared statements, e.g. {@link StatementCache#prepare(String)}.
+ */
+@FunctionalInterface
+public interface StatementSource {
+    CachedStatement prepare(String sql) throws SQLException;
+}
@@ -0,0 +1,225 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transactions of one persistence manager, tracked per thread.
+ * <p>
+ * The outermost transaction leases the write connection of the thread and switches off
+ * its auto-commit mode. Inner transactions either join it for free ({@link Propagation#REQUIRED})
+ * or run in a savepoint ({@link Propagation#NESTED}).
+ */
+public final class TransactionContext {
+    private static final System.Logger LOGGER = System.getLogger(TransactionContext.class.getName());
+
+    private final ConnectionProvider connectionProvider;
+    private final Synchronization synchronization;
+    private final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+    private static final class Transaction {
+        private final ConnectionLease lease;
+        private final Connection connection;
+        private final List<Level> levels = new ArrayList<>();
+        private boolean rollbackOnly;
+
+        private Transaction(ConnectionLease lease) {
+            this.lease = lease;
+            this.connection = lease.getConnection();
+        }
+
+        private Level innermost() {
+            return levels.get(levels.size() - 1);
+        }
+    }
+
+    private static final class Level {
+        /**
+         * <code>null</code> for the outermost level and levels joining the outer transaction.
+         */
+        private final Savepoint savepoint;
+        /**
+         * Entities inserted at this level, their ids are reset if it is rolled back.
+         */
+        private final List<Object> inserted = new ArrayList<>();
+
+        private Level(Savepoint savepoint) {
+            this.savepoint = savepoint;
+        }
+    }
+
+    /**
+     * Callbacks keeping state of the manager in step with its transactions,
+     * called by the thread running the transaction.
+     */
+    public interface Synchronization {
+        /**
+         * Called after the outermost transaction of the thread was started.
+         */
+        void begun();
+
+        /**
+         * Called after the outermost transaction of the thread was committed.
+         */
+        void committed();
+
+        /**
+         * Called after changes were rolled back, e.g. to forget entities loaded meanwhile.
+         *
+         * @param savepoint whether only a nested transaction was rolled back and the outer one goes on
+         * @param inserted  entities inserted by the rolled back changes, see {@link #recordInsert(Object)}
+         */
+        void rolledBack(boolean savepoint, List<Object> inserted);
+    }
+
+    public TransactionContext(ConnectionProvider connectionProvider, Synchronization synchronization) {
+        this.connectionProvider = connectionProvider;
+        this.synchronization = synchronization;
+    }
+
+    public boolean isActive() {
+        return current.get() != null;
+    }
+
+    public void begin(Propagation propagation) throws SQLException {
+        Transaction transaction = current.get();
+        if (transaction != null) {
+            transaction.levels.add(new Level(propagation == Propagation.NESTED ? transaction.connection.setSavepoint() : null));
+            return;
+        }
+
+        ConnectionLease lease = connectionProvider.acquire(true);
+        try {
+            lease.getConnection().setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        transaction = new Transaction(lease);
+        transaction.levels.add(new Level(null));
+        current.set(transaction);
+        synchronization.begun();
+        LOGGER.log(System.Logger.Level.DEBUG, "Transaction was started.");
+    }
+
+    /**
+     * Remember an entity inserted by the current thread. If the transaction or the savepoint
+     * it was inserted in is rolled back, its row is gone, so {@link Synchronization#rolledBack}
+     * gets the entity to unsave it again. Outside transactions the insert is committed at once.
+     */
+    public void recordInsert(Object entity) {
+        Transaction transaction = current.get();
+        if (transaction != null) {
+            transaction.innermost().inserted.add(entity);
+        }
+    }
+
+    /**
+     * Commit the innermost transaction of the thread. Joined and nested transactions
+     * are committed together with the outermost one.
+     *
+     * @throws PersistenceException if an inner transaction failed and the whole transaction was rolled back
+     */
+    public void commit() throws SQLException {
+        Transaction transaction = get();
+        Level level = transaction.levels.remove(transaction.levels.size() - 1);
+        if (!transaction.levels.isEmpty()) {
+            if (level.savepoint != null) {
+                transaction.connection.releaseSavepoint(level.savepoint);
+            }
+            // The inserts are undone if the outer transaction is rolled back
+            transaction.innermost().inserted.addAll(level.inserted);
+            return;
+        }
+
+        boolean committed = false;
+        try {
+            if (transaction.rollbackOnly) {
+                rollback(transaction, level.inserted);
+                throw new PersistenceException("Transaction was rolled back, because an inner transaction failed.");
+            }
+            // Leaving the manual commit mode commits, without starting another transaction like commit() does
+            transaction.connection.setAutoCommit(true);
+            committed = true;
+            LOGGER.log(System.Logger.Level.DEBUG, "Transaction was committed.");
+        } catch (SQLException | RuntimeException e) {
+            if (!transaction.rollbackOnly) {
+                try {
+                    rollback(transaction, level.inserted);
+                } catch (SQLException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+            }
+            throw e;
+        } finally {
+            try {
+                end(transaction);
+            } finally {
+                if (committed) {
+                    synchronization.committed();
+                }
+            }
+        }
+    }
+
+    /**
+     * Roll back the innermost transaction of the thread. A joined transaction
+     * marks the outer one for rollback, a nested one rolls back to its savepoint.
+     */
+    public void rollback() throws SQLException {
+        Transaction transaction = get();
+        Level level = transaction.levels.remove(transaction.levels.size() - 1);
+        if (!transaction.levels.isEmpty()) {
+            if (level.savepoint == null) {
+                transaction.rollbackOnly = true;
+                transaction.innermost().inserted.addAll(level.inserted);
+            } else {
+                transaction.connection.rollback(level.savepoint);
+                transaction.connection.releaseSavepoint(level.savepoint);
+                synchronization.rolledBack(true, level.inserted);
+            }
+            return;
+        }
+
+        try {
+            rollback(transaction, level.inserted);
+        } finally {
+            end(transaction);
+        }
+    }
+
+    private Transaction get() throws SQLException {
+        Transaction transaction = current.get();
+        if (transaction == null) {
+            throw new SQLException("No transaction is active.");
+        }
+        return transaction;
+    }
+
+    /**
+     * @param inserted entities inserted by the whole transaction
+     */
+    private void rollback(Transaction transaction, List<Object> inserted) throws SQLException {
+        try {
+            transaction.connection.rollback();
+            LOGGER.log(System.Logger.Level.DEBUG, "Transaction was rolled back.");
+        } finally {
+            synchronization.rolledBack(false, inserted);
+        }
+    }
+
+    private void end(Transaction transaction) throws SQLException {
+        current.remove();
+        try {
+            if (!transaction.connection.getAutoCommit()) {
+                transaction.connection.setAutoCommit(true);
+            }
+        } finally {
+            transaction.lease.close();
+        }
+    }
+}
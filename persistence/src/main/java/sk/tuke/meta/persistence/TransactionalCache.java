@@ -0,0 +1,124 @@
+package sk.tuke.meta.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Access of one manager to the {@link EntityCache second-level caches}, following its transactions.
+ * <p>
+ * Outside transactions, rows are stored and invalidated immediately. Inside a transaction,
+ * rows it loads or writes may be uncommitted, so they are kept for the thread running it
+ * and stored when it commits. A rollback invalidates every row the transaction touched,
+ * rows of other entities stay cached.
+ * <p>
+ * Rows are stored only if they were not invalidated since they were loaded, see {@link EntityCache#generation()}.
+ */
+final class TransactionalCache {
+    /**
+     * Rows of each transaction, <code>null</code> for rows it wrote or invalidated.
+     */
+    private final ThreadLocal<Map<Key, Loaded>> transactions = new ThreadLocal<>();
+
+    private record Key(Class<?> type, long id) {
+    }
+
+    /**
+     * @param generation {@link EntityCache#generation()} captured before the row was loaded
+     */
+    private record Loaded(Object[] row, long generation) {
+    }
+
+    void begin() {
+        transactions.set(new HashMap<>());
+    }
+
+    /**
+     * @return the cached row, or <code>null</code> if the type is not cached or the row is unknown
+     */
+    Object[] get(Class<?> type, long id) {
+        EntityCache cache = EntityCache.of(type);
+        if (cache == null) {
+            return null;
+        }
+        Map<Key, Loaded> transaction = transactions.get();
+        Key key = new Key(EntityMetadata.entityClass(type), id);
+        if (transaction != null && transaction.containsKey(key)) {
+            // the row was loaded or written by the transaction, the shared row may be outdated
+            Loaded loaded = transaction.get(key);
+            return loaded == null ? null : loaded.row();
+        }
+        return cache.get(id);
+    }
+
+    /**
+     * Store a freshly loaded entity, if its type is cached.
+     *
+     * @param generation {@link EntityCache#generation()} captured before the entity was loaded
+     */
+    void put(Class<?> type, long id, Object entity, long generation) {
+        EntityCache cache = EntityCache.of(type);
+        if (cache == null) {
+            return;
+        }
+        Map<Key, Loaded> transaction = transactions.get();
+        if (transaction == null) {
+            cache.put(id, EntityCache.toRow(entity), generation);
+        } else {
+            transaction.put(new Key(EntityMetadata.entityClass(type), id), new Loaded(EntityCache.toRow(entity), generation));
+        }
+    }
+
+    void invalidate(Class<?> type, long id) {
+        EntityCache cache = EntityCache.of(type);
+        if (cache == null) {
+            return;
+        }
+        cache.invalidate(id);
+        Map<Key, Loaded> transaction = transactions.get();
+        if (transaction != null) {
+            // invalidated once more on commit, other threads may cache the old row meanwhile
+            transaction.put(new Key(EntityMetadata.entityClass(type), id), null);
+        }
+    }
+
+    void commit() {
+        Map<Key, Loaded> transaction = transactions.get();
+        transactions.remove();
+        if (transaction == null) {
+            return;
+        }
+        transaction.forEach((key, loaded) -> {
+            EntityCache cache = EntityCache.of(key.type());
+            if (cache == null) {
+                return;
+            }
+            if (loaded == null) {
+                cache.invalidate(key.id());
+            } else {
+                cache.put(key.id(), loaded.row(), loaded.generation());
+            }
+        });
+    }
+
+    /**
+     * @param savepoint whether only a nested transaction was rolled back and the outer one goes on
+     */
+    void rollback(boolean savepoint) {
+        Map<Key, Loaded> transaction = transactions.get();
+        if (transaction == null) {
+            return;
+        }
+        if (savepoint) {
+            // rows loaded since the savepoint may show rolled back changes
+            transaction.replaceAll((key, loaded) -> null);
+            return;
+        }
+        transactions.remove();
+        transaction.keySet().forEach(key -> {
+            EntityCache cache = EntityCache.of(key.type());
+            if (cache != null) {
+                cache.invalidate(key.id());
+            }
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records saves and deletes in memory and writes them to the database on {@link #commit()}.
+ * <p>
+ * Repeated operations on the same instance are coalesced, the last one wins, and an entity
+ * that is saved and deleted before being inserted never reaches the database. On commit,
+ * all saves are written by {@link PersistenceManager#saveAll} and all deletes by
+ * {@link PersistenceManager#deleteAll}, both in one transaction. They group statements
+ * of each entity type into JDBC batches, ordered by the references between the types.
+ * <p>
+ * Recorded changes are not visible to queries until committed. A unit of work is used
+ * by a single thread.
+ */
+public class UnitOfWork implements AutoCloseable {
+    private final PersistenceManager manager;
+    private final Map<Object, Boolean> operations = new IdentityHashMap<>();
+    private final List<Object> order = new ArrayList<>();
+
+    public UnitOfWork(PersistenceManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Record the entity to be saved on commit.
+     */
+    public void save(Object entity) {
+        record(entity, true);
+    }
+
+    /**
+     * Record the entity to be deleted on commit.
+     */
+    public void delete(Object entity) {
+        record(entity, false);
+    }
+
+    private void record(Object entity, boolean save) {
+        if (operations.put(entity, save) == null) {
+            order.add(entity);
+        }
+    }
+
+    /**
+     * @return number of entities with a recorded operation
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Write all recorded operations in one transaction, joining a transaction of the thread if one is running.
+     * The recorded operations are forgotten when the transaction commits. If it fails, they are kept
+     * and the entities inserted meanwhile are unsaved again, so the commit can be retried.
+     */
+    public void commit() {
+        List<Object> saves = new ArrayList<>();
+        List<Object> deletes = new ArrayList<>();
+        for (Object entity : order) {
+            if (operations.get(entity)) {
+                saves.add(entity);
+            } else if (ProxyManager.getId(entity) != 0) {
+                deletes.add(entity);
+            }
+        }
+
+        List<Object> unsaved = EntityMetadata.unsaved(saves);
+        try {
+            manager.startTransaction(Propagation.REQUIRED);
+        } catch (SQLException e) {
+            throw new PersistenceException(e);
+        }
+
+        try {
+            if (!saves.isEmpty()) {
+                manager.saveAll(saves);
+            }
+            if (!deletes.isEmpty()) {
+                manager.deleteAll(deletes);
+            }
+        } catch (RuntimeException e) {
+            try {
+                manager.rollbackTransaction();
+            } catch (SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            EntityMetadata.resetIds(unsaved);
+            throw e;
+        }
+
+        try {
+            manager.commitTransaction();
+        } catch (SQLException e) {
+            EntityMetadata.resetIds(unsaved);
+            throw new PersistenceException(e);
+        } catch (RuntimeException e) {
+            EntityMetadata.resetIds(unsaved);
+            throw e;
+        }
+        clear();
+    }
+
+    /**
+     * Forget all recorded operations.
+     */
+    public void clear() {
+        operations.clear();
+        order.clear();
+    }
+
+    /**
+     * Forget operations that were not committed.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+}
@@ -0,0 +1,96 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnMetadataTest {
+    private Connection connection;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        connection.close();
+    }
+
+    private Sample reload(long id) {
+        try (ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            return manager.get(Sample.class, id).orElseThrow();
+        }
+    }
+
+    private static void assertSameValues(Sample expected, Sample actual) {
+        assertEquals(expected.getIntValue(), actual.getIntValue());
+        assertEquals(expected.getLongValue(), actual.getLongValue());
+        assertEquals(expected.getDoubleValue(), actual.getDoubleValue());
+        assertEquals(expected.isBooleanValue(), actual.isBooleanValue());
+        assertEquals(expected.getFloatValue(), actual.getFloatValue());
+        assertEquals(expected.getShortValue(), actual.getShortValue());
+        assertEquals(expected.getByteValue(), actual.getByteValue());
+        assertEquals(expected.getBoxedInt(), actual.getBoxedInt());
+        assertEquals(expected.getBoxedLong(), actual.getBoxedLong());
+        assertEquals(expected.getBoxedDouble(), actual.getBoxedDouble());
+        assertEquals(expected.getBoxedBoolean(), actual.getBoxedBoolean());
+        assertEquals(expected.getBoxedFloat(), actual.getBoxedFloat());
+        assertEquals(expected.getBoxedShort(), actual.getBoxedShort());
+        assertEquals(expected.getBoxedByte(), actual.getBoxedByte());
+        assertEquals(expected.getText(), actual.getText());
+    }
+
+    @Test
+    void valuesOfAllTypesAreWrittenAndRead() {
+        try (ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            for (int seed = 1; seed <= 3; seed++) {
+                Sample sample = Sample.of(seed);
+                long id = manager.save(sample);
+                assertEquals(id, sample.getId());
+                assertSameValues(sample, reload(id));
+            }
+        }
+    }
+
+    @Test
+    void nullColumnsKeepDefaults() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO 'Sample' (id) VALUES (7)");
+        }
+
+        assertSameValues(new Sample(), reload(7));
+    }
+
+    @Test
+    void numbersAreConvertedToFieldTypes() {
+        Sample sample = new Sample();
+        ColumnMetadata shortColumn = EntityMetadata.of(Sample.class).getColumn("shortValue");
+        ColumnMetadata boxedLongColumn = EntityMetadata.of(Sample.class).getColumn("boxedLong");
+
+        shortColumn.set(sample, 12);
+        boxedLongColumn.set(sample, 34);
+
+        assertEquals((short) 12, sample.getShortValue());
+        assertEquals(34L, sample.getBoxedLong());
+        assertEquals((short) 12, shortColumn.get(sample));
+    }
+
+    @Test
+    void fieldsAreReadAndWrittenThroughAccessors() {
+        Sample sample = Sample.of(5);
+        for (ColumnMetadata column : EntityMetadata.of(Sample.class).getAllColumns()) {
+            Object value = column.get(sample);
+            column.set(sample, null);
+            column.set(sample, value);
+            assertEquals(value, column.get(sample), column.getName());
+        }
+        assertSameValues(Sample.of(5), sample);
+    }
+}
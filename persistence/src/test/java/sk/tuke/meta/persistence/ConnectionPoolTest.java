@@ -0,0 +1,116 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private static final long TIMEOUT_MILLIS = 100;
+
+    @TempDir
+    Path directory;
+    private ConnectionPool pool;
+    private ExecutorService otherThread;
+
+    @BeforeEach
+    void open() throws SQLException {
+        pool = new ConnectionPool(TestDatabase.file(directory), 1, StatementCache.DEFAULT_CAPACITY, TIMEOUT_MILLIS);
+        otherThread = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        otherThread.shutdownNow();
+        pool.close();
+    }
+
+    private <T> T inOtherThread(Callable<T> action) throws Exception {
+        try {
+            return otherThread.submit(action).get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static String query(ConnectionLease lease, String sql) throws SQLException {
+        try (Statement statement = lease.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    @Test
+    void databaseIsInWalMode() throws SQLException {
+        try (ConnectionLease lease = pool.acquire(false)) {
+            assertEquals("wal", query(lease, "PRAGMA journal_mode"));
+            assertEquals("1", query(lease, "PRAGMA query_only"));
+        }
+    }
+
+    @Test
+    void nestedLeasesOfThreadShareConnection() throws SQLException {
+        try (ConnectionLease outer = pool.acquire(false); ConnectionLease inner = pool.acquire(false)) {
+            assertSame(outer.getConnection(), inner.getConnection());
+        }
+        try (ConnectionLease write = pool.acquire(true); ConnectionLease read = pool.acquire(false)) {
+            assertTrue(read.isWrite());
+            assertSame(write.getConnection(), read.getConnection());
+        }
+        assertEquals(1, pool.getOpenReaders());
+    }
+
+    @Test
+    void readerWaitTimesOut() throws Exception {
+        try (ConnectionLease ignored = pool.acquire(false)) {
+            SQLException exception = assertThrows(SQLException.class, () -> inOtherThread(() -> pool.acquire(false)));
+            assertTrue(exception.getMessage().startsWith("Timed out"));
+        }
+        assertTrue(inOtherThread(() -> {
+            try (ConnectionLease lease = pool.acquire(false)) {
+                return lease.getConnection() != null;
+            }
+        }));
+    }
+
+    @Test
+    void writerWaitTimesOut() throws Exception {
+        try (ConnectionLease ignored = pool.acquire(true)) {
+            SQLException exception = assertThrows(SQLException.class, () -> inOtherThread(() -> pool.acquire(true)));
+            assertTrue(exception.getMessage().startsWith("Timed out"));
+        }
+        assertTrue(inOtherThread(() -> {
+            try (ConnectionLease lease = pool.acquire(true)) {
+                return lease.getConnection() != null;
+            }
+        }));
+    }
+
+    @Test
+    void readersDoNotWaitForWriter() throws Exception {
+        try (ConnectionLease write = pool.acquire(true); Statement statement = write.getConnection().createStatement()) {
+            write.getConnection().setAutoCommit(false);
+            statement.execute("INSERT INTO 'Team' (name) VALUES ('Uncommitted')");
+
+            assertEquals("0", inOtherThread(() -> {
+                try (ConnectionLease read = pool.acquire(false)) {
+                    return query(read, "SELECT COUNT(*) FROM 'Team'");
+                }
+            }));
+            write.getConnection().rollback();
+            write.getConnection().setAutoCommit(true);
+        }
+    }
+}
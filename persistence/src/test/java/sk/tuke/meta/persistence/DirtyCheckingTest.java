@@ -0,0 +1,92 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyCheckingTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void unknownSnapshotWritesAllColumns() {
+        assertNull(DirtyChecking.changedColumns(null, new Object[]{"a", 1}));
+        assertNull(DirtyChecking.changedColumns(new Object[]{"a"}, new Object[]{"a", 1}));
+    }
+
+    @Test
+    void unchangedValuesGiveNoColumns() {
+        assertArrayEquals(new int[0], DirtyChecking.changedColumns(new Object[]{"a", 1, null}, new Object[]{"a", 1, null}));
+    }
+
+    @Test
+    void changedColumnsAreListedInOrder() {
+        int[] changed = DirtyChecking.changedColumns(
+                new Object[]{"a", 1, null, 2L, "b"}, new Object[]{"a", 2, null, 3L, "b"});
+        assertArrayEquals(new int[]{1, 3}, changed);
+    }
+
+    @Test
+    void updateSqlSetsOnlyChangedColumns() {
+        String sql = DirtyChecking.updateSql("Player", "id", new String[]{"name", "score", "team"}, new int[]{2, 0});
+        assertEquals("UPDATE 'Player' SET team = ?,name = ? WHERE id = ?", sql);
+    }
+
+    @Test
+    void savingUnchangedEntityWritesNothing() throws SQLException {
+        Player player = new Player("Ann", 10, new Team("Red"));
+        manager.save(player);
+
+        long changes = TestDatabase.totalChanges(connection);
+        manager.save(player);
+        manager.saveAll(List.of(player, player.getTeam()));
+        assertEquals(changes, TestDatabase.totalChanges(connection));
+    }
+
+    @Test
+    void savingLoadedEntityWritesNothing() throws SQLException {
+        long id = manager.save(new Player("Ann", 10, new Team("Red")));
+        try (ReflectivePersistenceManager other = new ReflectivePersistenceManager(connection)) {
+            Player loaded = other.get(Player.class, id).orElseThrow();
+
+            long changes = TestDatabase.totalChanges(connection);
+            other.save(loaded);
+            other.saveAll(other.getAll(Player.class));
+            assertEquals(changes, TestDatabase.totalChanges(connection));
+        }
+    }
+
+    @Test
+    void onlyChangedColumnIsUpdated() throws SQLException {
+        Player player = new Player("Ann", 10, null);
+        long id = manager.save(player);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UPDATE 'Player' SET name = 'Changed elsewhere' WHERE id = " + id);
+        }
+
+        player.setScore(20);
+        manager.save(player);
+
+        assertEquals("Changed elsewhere", TestDatabase.queryString(connection, "SELECT name FROM 'Player' WHERE id = " + id));
+        assertEquals(20, TestDatabase.queryLong(connection, "SELECT score FROM 'Player' WHERE id = " + id));
+    }
+}
@@ -0,0 +1,167 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCacheTest {
+    private static final Object[] ROW = {1L, "Red"};
+
+    @AfterEach
+    void disable() {
+        EntityCache.disable(Team.class);
+    }
+
+    private static EntityCache enable(Cached.Eviction eviction, int maxSize) {
+        return EntityCache.enable(Team.class, eviction, maxSize, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void lruEvictsLeastRecentlyUsedRow() {
+        EntityCache cache = enable(Cached.Eviction.LRU, 2);
+        cache.put(1, ROW, EntityCache.generation());
+        cache.put(2, ROW, EntityCache.generation());
+        assertNotNull(cache.get(1));
+
+        assertTrue(cache.put(3, ROW, EntityCache.generation()));
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void tinyLfuRejectsRowsLessFrequentThanTheVictim() {
+        EntityCache cache = enable(Cached.Eviction.TINY_LFU, 2);
+        cache.put(1, ROW, EntityCache.generation());
+        cache.put(2, ROW, EntityCache.generation());
+        for (int i = 0; i < 5; i++) {
+            cache.get(1);
+            cache.get(2);
+        }
+
+        assertFalse(cache.put(3, ROW, EntityCache.generation()));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(3));
+
+        for (int i = 0; i < 10; i++) {
+            cache.get(4);
+        }
+        assertTrue(cache.put(4, ROW, EntityCache.generation()));
+        assertNotNull(cache.get(4));
+    }
+
+    @Test
+    void rowsExpireAfterWrite() throws InterruptedException {
+        EntityCache cache = EntityCache.enable(Team.class, Cached.Eviction.LRU, 10, 20, TimeUnit.MILLISECONDS);
+        cache.put(1, ROW, EntityCache.generation());
+        assertNotNull(cache.get(1));
+
+        Thread.sleep(50);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void rowLoadedBeforeInvalidationIsNotStored() {
+        EntityCache cache = enable(Cached.Eviction.LRU, 10);
+        long generation = EntityCache.generation();
+        cache.invalidate(1);
+
+        assertFalse(cache.put(1, ROW, generation));
+        assertNull(cache.get(1));
+        assertTrue(cache.put(2, ROW, generation));
+        assertTrue(cache.put(1, ROW, EntityCache.generation()));
+    }
+
+    @Test
+    void streamedRowInvalidatedBeforeItIsReadIsNotCached() throws SQLException {
+        EntityCache cache = enable(Cached.Eviction.LRU, 10);
+        try (Connection connection = TestDatabase.open();
+             ReflectivePersistenceManager writer = new ReflectivePersistenceManager(connection);
+             ReflectivePersistenceManager reader = new ReflectivePersistenceManager(connection)) {
+            Team team = new Team("Red");
+            writer.save(team);
+
+            try (Stream<Team> stream = reader.streamAll(Team.class)) {
+                Iterator<Team> teams = stream.iterator();
+                team.setName("Blue");
+                writer.save(team);
+                teams.next();
+            }
+            assertNull(cache.get(team.getId()));
+        }
+    }
+
+    @Test
+    void rowsLoadedInTransactionAreStoredWhenItCommits() throws SQLException {
+        EntityCache cache = enable(Cached.Eviction.LRU, 10);
+        try (Connection connection = TestDatabase.open();
+             ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            long id = manager.save(new Team("Red"));
+            try (ReflectivePersistenceManager reader = new ReflectivePersistenceManager(connection)) {
+                reader.startTransaction();
+                reader.getAll(Team.class);
+                assertNull(cache.get(id));
+                reader.commitTransaction();
+            }
+            assertNotNull(cache.get(id));
+        }
+    }
+
+    @Test
+    void rollbackInvalidatesRowsOfTheTransaction() throws SQLException {
+        EntityCache cache = enable(Cached.Eviction.LRU, 10);
+        try (Connection connection = TestDatabase.open();
+             ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            Team changed = new Team("Changed");
+            Team untouched = new Team("Untouched");
+            manager.saveAll(List.of(changed, untouched));
+            try (ReflectivePersistenceManager reader = new ReflectivePersistenceManager(connection)) {
+                reader.getAll(Team.class);
+            }
+            assertNotNull(cache.get(changed.getId()));
+
+            manager.startTransaction();
+            changed.setName("Uncommitted");
+            manager.save(changed);
+            manager.rollbackTransaction();
+
+            assertNull(cache.get(changed.getId()));
+            assertNotNull(cache.get(untouched.getId()));
+        }
+    }
+
+    @Test
+    void savepointRollbackKeepsOtherCachedRows() throws SQLException {
+        EntityCache cache = enable(Cached.Eviction.LRU, 100);
+        try (Connection connection = TestDatabase.open();
+             ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            Team untouched = new Team("Untouched");
+            Team changed = new Team("Changed");
+            manager.saveAll(List.of(untouched, changed));
+            try (ReflectivePersistenceManager reader = new ReflectivePersistenceManager(connection)) {
+                reader.getAll(Team.class);
+            }
+            assertNotNull(cache.get(untouched.getId()));
+
+            manager.startTransaction(Propagation.REQUIRED);
+            manager.startTransaction(Propagation.NESTED);
+            changed.setName("Uncommitted");
+            manager.save(changed);
+            manager.rollbackTransaction();
+            manager.commitTransaction();
+
+            assertNotNull(cache.get(untouched.getId()));
+            assertNull(cache.get(changed.getId()));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdentityMapTest {
+    private ExecutorService otherThread;
+
+    @BeforeEach
+    void start() {
+        otherThread = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void stop() {
+        otherThread.shutdownNow();
+    }
+
+    private <T> T inOtherThread(Callable<T> action) throws Exception {
+        return otherThread.submit(action).get();
+    }
+
+    @Test
+    void putIfAbsentKeepsKnownInstance() {
+        IdentityMap map = new IdentityMap();
+        Team known = new Team("Known");
+        assertSame(known, map.putIfAbsent(Team.class, 1, known));
+        assertSame(known, map.putIfAbsent(Team.class, 1, new Team("Loaded again")));
+        assertSame(known, map.get(Team.class, 1));
+        assertNull(map.get(Player.class, 1));
+    }
+
+    @Test
+    void referencePrefersLoadedEntityToProxy() {
+        IdentityMap map = new IdentityMap();
+        Team proxy = new Team("Proxy");
+        map.putProxy(Team.class, 1, proxy);
+        assertSame(proxy, map.getReference(Team.class, 1));
+        assertNull(map.get(Team.class, 1));
+
+        Team loaded = new Team("Loaded");
+        map.put(Team.class, 1, loaded);
+        assertSame(loaded, map.getReference(Team.class, 1));
+    }
+
+    @Test
+    void removeForgetsEntityAndProxy() {
+        IdentityMap map = new IdentityMap();
+        map.put(Team.class, 1, new Team("Loaded"));
+        map.putProxy(Team.class, 1, new Team("Proxy"));
+        map.remove(Team.class, 1);
+
+        assertNull(map.getReference(Team.class, 1));
+    }
+
+    @Test
+    void managerReturnsOneInstancePerRow() throws SQLException {
+        try (Connection connection = TestDatabase.open()) {
+            Team team = new Team("Red");
+            try (ReflectivePersistenceManager writer = new ReflectivePersistenceManager(connection)) {
+                writer.saveAll(List.of(new Player("A", 1, team), new Player("B", 2, team)));
+            }
+
+            try (ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+                Team loaded = manager.get(Team.class, team.getId()).orElseThrow();
+                assertNotSame(team, loaded);
+                assertSame(loaded, manager.get(Team.class, team.getId()).orElseThrow());
+                assertSame(loaded, manager.getAll(Team.class).get(0));
+                for (Player player : manager.getAll(Player.class)) {
+                    assertSame(loaded, player.getTeam());
+                }
+            }
+        }
+    }
+
+    @Test
+    void managerKnowsSavedEntitiesAndForgetsDeletedOnes() throws SQLException {
+        try (Connection connection = TestDatabase.open();
+             ReflectivePersistenceManager manager = new ReflectivePersistenceManager(connection)) {
+            Team team = new Team("Red");
+            long id = manager.save(team);
+            assertSame(team, manager.get(Team.class, id).orElseThrow());
+
+            manager.delete(team);
+            assertTrue(manager.get(Team.class, id).isEmpty());
+        }
+    }
+
+    @Test
+    void instancesOutsideTransactionsAreShared() throws Exception {
+        IdentityMap map = new IdentityMap();
+        Team team = new Team("Red");
+        map.put(Team.class, 1, team);
+
+        assertSame(team, map.get(Team.class, 1));
+        assertSame(team, inOtherThread(() -> map.get(Team.class, 1)));
+    }
+
+    @Test
+    void transactionInstancesAreVisibleOnlyToItsThread() throws Exception {
+        IdentityMap map = new IdentityMap();
+        Team shared = new Team("Committed");
+        map.put(Team.class, 1, shared);
+
+        map.begin();
+        Team changed = new Team("Uncommitted");
+        map.put(Team.class, 1, changed);
+        map.put(Team.class, 2, new Team("Inserted"));
+
+        assertSame(changed, map.get(Team.class, 1));
+        assertSame(shared, inOtherThread(() -> map.get(Team.class, 1)));
+        assertNull(inOtherThread(() -> map.get(Team.class, 2)));
+
+        map.commit();
+        assertSame(changed, inOtherThread(() -> map.get(Team.class, 1)));
+    }
+
+    @Test
+    void rollbackForgetsOnlyTransactionInstances() throws Exception {
+        IdentityMap map = new IdentityMap();
+        Team shared = new Team("Committed");
+        map.put(Team.class, 1, shared);
+
+        map.begin();
+        map.put(Team.class, 1, new Team("Uncommitted"));
+        map.rollback();
+
+        assertSame(shared, map.get(Team.class, 1));
+        assertSame(shared, inOtherThread(() -> map.get(Team.class, 1)));
+    }
+
+    @Test
+    void pooledManagerIsolatesUncommittedChanges(@TempDir Path directory) throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(TestDatabase.file(directory), 2)) {
+            ReflectivePersistenceManager manager = new ReflectivePersistenceManager(pool);
+            long id = manager.save(new Team("Committed"));
+
+            manager.startTransaction(Propagation.REQUIRED);
+            Team mine = manager.get(Team.class, id).orElseThrow();
+            mine.setName("Uncommitted");
+            manager.save(mine);
+            assertSame(mine, manager.get(Team.class, id).orElseThrow());
+
+            Team seen = inOtherThread(() -> manager.get(Team.class, id).orElseThrow());
+            assertNotSame(mine, seen);
+            assertEquals("Committed", seen.getName());
+
+            manager.commitTransaction();
+            assertSame(mine, inOtherThread(() -> manager.get(Team.class, id).orElseThrow()));
+        }
+    }
+
+    @Test
+    void pooledManagerForgetsRolledBackInserts(@TempDir Path directory) throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(TestDatabase.file(directory), 2)) {
+            ReflectivePersistenceManager manager = new ReflectivePersistenceManager(pool);
+
+            manager.startTransaction(Propagation.REQUIRED);
+            long id = manager.save(new Team("Rolled back"));
+            manager.rollbackTransaction();
+
+            assertTrue(manager.get(Team.class, id).isEmpty());
+            assertTrue(inOtherThread(() -> manager.get(Team.class, id).isEmpty()));
+        }
+    }
+}
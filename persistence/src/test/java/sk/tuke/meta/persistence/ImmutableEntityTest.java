@@ -0,0 +1,89 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImmutableEntityTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private Team team;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+        team = new Team("Red");
+        manager.save(team);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long count() throws SQLException {
+        return TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Trophy'");
+    }
+
+    @Test
+    void recordsAreCreatedByCanonicalConstructor() throws Exception {
+        long id = manager.save(new Trophy("Cup", team));
+        long withoutTeam = manager.save(new Trophy("Medal", null));
+
+        try (ReflectivePersistenceManager reader = new ReflectivePersistenceManager(connection)) {
+            Trophy loaded = reader.get(Trophy.class, id).orElseThrow();
+            assertEquals(id, loaded.id());
+            assertEquals("Cup", loaded.name());
+            assertEquals("Red", loaded.team().getName());
+            assertSame(loaded, reader.get(Trophy.class, id).orElseThrow());
+            assertNull(reader.get(Trophy.class, withoutTeam).orElseThrow().team());
+
+            List<Trophy> all = reader.getAll(Trophy.class);
+            assertSame(loaded, all.get(0));
+            assertNull(all.get(1).team());
+        }
+    }
+
+    @Test
+    void insertedRecordKeepsItsRow() throws SQLException {
+        Trophy trophy = new Trophy("Cup", team);
+        long id = manager.save(trophy);
+        assertEquals(0, trophy.id());
+        assertEquals(id, manager.getIdentityMap().getInsertedId(trophy));
+        assertThrows(PersistenceException.class, () -> manager.save(trophy));
+        assertEquals(1, count());
+
+        manager.delete(trophy);
+        assertEquals(0, count());
+    }
+
+    @Test
+    void recordWithIdReplacesItsRow() throws Exception {
+        long id = manager.save(new Trophy("Cup", team));
+        manager.save(new Trophy(id, "Renamed", team));
+
+        assertEquals(1, count());
+        assertEquals("Renamed", TestDatabase.queryString(connection, "SELECT name FROM 'Trophy' WHERE id = " + id));
+        assertEquals("Renamed", manager.get(Trophy.class, id).orElseThrow().name());
+    }
+
+    @Test
+    void savedAllRecordsAreInserted() throws SQLException {
+        List<Trophy> trophies = List.of(new Trophy("Cup", team), new Trophy("Cup", team));
+        manager.saveAll(trophies);
+
+        assertEquals(2, count());
+        manager.deleteAll(trophies);
+        assertEquals(0, count());
+    }
+}
@@ -0,0 +1,95 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationTest {
+    private static final Integer[] SCORES = {3, 1, null, 3, 2, null, 3, 1, 2, 3, 3};
+
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private List<Player> players;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+        players = new ArrayList<>();
+        for (int i = 0; i < SCORES.length; i++) {
+            players.add(new Player("P" + i, SCORES[i], null));
+        }
+        manager.saveAll(players);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private List<Long> walk(String column, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Player> page = manager.page(Player.class, column, token, limit);
+            assertTrue(page.getItems().size() <= limit);
+            page.getItems().forEach(player -> ids.add(player.getId()));
+            token = page.getContinuationToken();
+        } while (token != null);
+        return ids;
+    }
+
+    @Test
+    void pagesContinueAcrossDuplicateValues() {
+        List<Long> expected = players.stream()
+                .filter(player -> player.getScore() != null)
+                .sorted(Comparator.comparing(Player::getScore).thenComparing(Player::getId))
+                .map(Player::getId)
+                .toList();
+
+        for (int limit = 1; limit <= SCORES.length; limit++) {
+            assertEquals(expected, walk("score", limit), "page size " + limit);
+        }
+    }
+
+    @Test
+    void rowsWithNullValueAreNotReturned() {
+        List<Long> ids = walk("score", 2);
+        players.stream()
+                .filter(player -> player.getScore() == null)
+                .forEach(player -> assertFalse(ids.contains(player.getId())));
+    }
+
+    @Test
+    void pagesByIdReturnAllRows() {
+        List<Long> expected = players.stream().map(Player::getId).sorted().toList();
+        assertEquals(expected, walk(null, 4));
+    }
+
+    @Test
+    void lastFullPageHasNoContinuation() {
+        Page<Player> page = manager.page(Player.class, null, null, SCORES.length);
+        assertEquals(SCORES.length, page.getItems().size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void tokenOfAnotherColumnIsRejected() {
+        String token = manager.page(Player.class, null, null, 1).getContinuationToken();
+        assertThrows(PersistenceException.class, () -> manager.page(Player.class, "score", token, 1));
+
+        String scoreToken = manager.page(Player.class, "score", null, 1).getContinuationToken();
+        assertThrows(PersistenceException.class, () -> manager.page(Player.class, "name", scoreToken, 1));
+        assertThrows(PersistenceException.class, () -> manager.page(Player.class, "team", scoreToken, 1));
+    }
+}
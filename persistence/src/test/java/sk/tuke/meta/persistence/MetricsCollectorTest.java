@@ -0,0 +1,103 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sk.tuke.meta.persistence.PersistenceListener.Operation;
+
+class MetricsCollectorTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private MetricsCollector metrics;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+        metrics = new MetricsCollector();
+        manager.setListener(metrics);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    @Test
+    void smallLatenciesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        assertEquals(11, histogram.getCount());
+        assertEquals(10, histogram.getMax());
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void percentilesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 * 0.03);
+        assertEquals(9_900_000, histogram.getValueAtPercentile(99), 9_900_000 * 0.03);
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_500, histogram.getMean(), 1);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    void operationsAreMeasuredWithRowsAndFailures() {
+        manager.saveAll(List.of(new Player("A", 1, null), new Player("B", 2, null), new Player("C", 3, null)));
+        manager.getAll(Player.class);
+        assertThrows(PersistenceException.class, () -> manager.getBy(Player.class, "unknown", 1));
+
+        MetricsCollector.OperationMetrics getAll = metrics.getOperation(Operation.GET_ALL, Player.class);
+        assertEquals(1, getAll.getLatency().getCount());
+        assertEquals(3, getAll.getRows());
+        assertEquals(0, getAll.getFailures());
+        assertEquals(3, metrics.getOperation(Operation.SAVE_ALL, null).getRows());
+        assertEquals(1, metrics.getOperation(Operation.GET_BY, Player.class).getFailures());
+        assertTrue(metrics.getOperations().containsKey("GET_ALL Player"));
+        assertFalse(metrics.getStatements().isEmpty());
+
+        metrics.reset();
+        assertEquals(0, metrics.getOperation(Operation.GET_ALL, Player.class).getLatency().getCount());
+    }
+
+    @Test
+    void repeatedSelectsAreReportedAsNPlusOne() throws Exception {
+        for (int id = 1; id < metrics.getNPlusOneThreshold(); id++) {
+            manager.get(Team.class, id);
+        }
+        assertEquals(0, metrics.getSuspectedNPlusOne());
+
+        manager.get(Team.class, 100);
+        manager.get(Team.class, 101);
+        assertEquals(1, metrics.getSuspectedNPlusOne());
+    }
+
+    @Test
+    void defaultListenerIgnoresEverything() {
+        manager.setListener(PersistenceListener.NONE);
+        manager.getAll(Player.class);
+        assertNull(metrics.getOperation(Operation.GET_ALL, Player.class));
+    }
+}
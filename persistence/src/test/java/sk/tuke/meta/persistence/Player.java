@@ -0,0 +1,53 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+@Entity
+public class Player {
+    @Id
+    private long id;
+    private String name;
+    private Integer score;
+
+    @ManyToOne
+    private Team team;
+
+    public Player() {
+    }
+
+    public Player(String name, Integer score, Team team) {
+        this.name = name;
+        this.score = score;
+        this.team = team;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public void setScore(Integer score) {
+        this.score = score;
+    }
+
+    public Team getTeam() {
+        return team;
+    }
+
+    public void setTeam(Team team) {
+        this.team = team;
+    }
+}
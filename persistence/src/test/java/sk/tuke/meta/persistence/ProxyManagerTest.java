@@ -0,0 +1,60 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProxyManagerTest {
+    private final IdentityMap identityMap = new IdentityMap();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Object load(Class<?> type, long id) {
+        loads.incrementAndGet();
+        return new Team("Loaded " + id);
+    }
+
+    private Team proxy(long id) throws ReflectiveOperationException {
+        return ProxyManager.createProxy(this::load, identityMap, Team.class, id);
+    }
+
+    @Test
+    void proxiesOfOneEntityShareOneClass() throws ReflectiveOperationException {
+        Team first = proxy(1);
+        Team second = proxy(2);
+
+        assertNotSame(Team.class, first.getClass());
+        assertSame(first.getClass(), second.getClass());
+    }
+
+    @Test
+    void proxyIsLoadedOnceOnFirstCall() throws ReflectiveOperationException {
+        Team proxy = proxy(1);
+        assertEquals(1, ProxyManager.getId(proxy));
+        assertEquals(0, loads.get());
+
+        assertEquals("Loaded 1", proxy.getName());
+        assertEquals("Loaded 1", proxy.getName());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void knownInstancesAreReused() throws ReflectiveOperationException {
+        Team loaded = new Team("Known");
+        identityMap.put(Team.class, 1, loaded);
+        assertSame(loaded, proxy(1));
+
+        Team proxy = proxy(2);
+        assertSame(proxy, proxy(2));
+    }
+
+    @Test
+    void proxyTakesEntityLoadedMeanwhile() throws ReflectiveOperationException {
+        Team proxy = proxy(1);
+        identityMap.put(Team.class, 1, new Team("Known"));
+
+        assertEquals("Known", proxy.getName());
+        assertEquals(0, loads.get());
+    }
+}
@@ -0,0 +1,46 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryFieldTest {
+    private static final QueryField<Player, Integer> SCORE = new QueryField<>(Player.class, "SCORE", Integer.class);
+    private static final QueryField<Player, String> NAME = new QueryField<>(Player.class, "name", String.class);
+
+    @Test
+    void inPadsParametersToPowerOfTwo() {
+        assertEquals(List.of(1), SCORE.in(List.of(1)).getParameters());
+        assertEquals(List.of(1, 2), SCORE.in(List.of(1, 2)).getParameters());
+        assertEquals(List.of(1, 2, 3, 3), SCORE.in(List.of(1, 2, 3)).getParameters());
+        assertEquals(List.of(1, 2, 3, 4, 5, 5, 5, 5), SCORE.in(List.of(1, 2, 3, 4, 5)).getParameters());
+        assertEquals("score IN (?,?,?,?)", SCORE.in(List.of(1, 2, 3)).getSql());
+        assertEquals(SCORE.in(List.of(1, 2, 3)).getSql(), SCORE.in(List.of(4, 5, 6, 7)).getSql());
+    }
+
+    @Test
+    void emptyInMatchesNothing() {
+        EntityQuery.Condition<Player> condition = SCORE.in(List.of());
+        assertEquals("0 = 1", condition.getSql());
+        assertTrue(condition.getParameters().isEmpty());
+    }
+
+    @Test
+    void conditionsBindValuesAsParameters() {
+        EntityQuery.Condition<Player> condition = EntityQuery.Condition.or(
+                EntityQuery.Condition.and(NAME.eq("x' OR 1 = 1"), SCORE.gt(10)),
+                EntityQuery.Condition.not(NAME.eq(null)));
+
+        assertEquals("((name = ? AND score > ?) OR NOT (name IS NULL))", condition.getSql());
+        assertEquals(List.of("x' OR 1 = 1", 10), condition.getParameters());
+    }
+
+    @Test
+    void invalidFieldsAndValuesAreRejected() {
+        assertThrows(PersistenceException.class, () -> new QueryField<>(Player.class, "name; DROP TABLE Player", String.class));
+        assertThrows(IllegalArgumentException.class, () -> SCORE.lt(null));
+    }
+}
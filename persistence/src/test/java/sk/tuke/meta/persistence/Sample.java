@@ -0,0 +1,118 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Entity with a column of every supported value type.
+ */
+@Entity
+public class Sample {
+    @Id
+    private long id;
+    private int intValue;
+    private long longValue;
+    private double doubleValue;
+    private boolean booleanValue;
+    private float floatValue;
+    private short shortValue;
+    private byte byteValue;
+    private Integer boxedInt;
+    private Long boxedLong;
+    private Double boxedDouble;
+    private Boolean boxedBoolean;
+    private Float boxedFloat;
+    private Short boxedShort;
+    private Byte boxedByte;
+    private String text;
+
+    public Sample() {
+    }
+
+    /**
+     * Fill all columns with values derived from the seed.
+     */
+    public static Sample of(int seed) {
+        Sample sample = new Sample();
+        sample.intValue = seed;
+        sample.longValue = Long.MAX_VALUE - seed;
+        sample.doubleValue = seed + 0.25;
+        sample.booleanValue = seed % 2 == 0;
+        sample.floatValue = seed + 0.5f;
+        sample.shortValue = (short) (seed + 1000);
+        sample.byteValue = (byte) (seed - 100);
+        sample.boxedInt = -seed;
+        sample.boxedLong = Long.MIN_VALUE + seed;
+        sample.boxedDouble = seed - 0.75;
+        sample.boxedBoolean = seed % 2 != 0;
+        sample.boxedFloat = seed - 0.5f;
+        sample.boxedShort = (short) -seed;
+        sample.boxedByte = (byte) seed;
+        sample.text = "Sample " + seed;
+        return sample;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getIntValue() {
+        return intValue;
+    }
+
+    public long getLongValue() {
+        return longValue;
+    }
+
+    public double getDoubleValue() {
+        return doubleValue;
+    }
+
+    public boolean isBooleanValue() {
+        return booleanValue;
+    }
+
+    public float getFloatValue() {
+        return floatValue;
+    }
+
+    public short getShortValue() {
+        return shortValue;
+    }
+
+    public byte getByteValue() {
+        return byteValue;
+    }
+
+    public Integer getBoxedInt() {
+        return boxedInt;
+    }
+
+    public Long getBoxedLong() {
+        return boxedLong;
+    }
+
+    public Double getBoxedDouble() {
+        return boxedDouble;
+    }
+
+    public Boolean getBoxedBoolean() {
+        return boxedBoolean;
+    }
+
+    public Float getBoxedFloat() {
+        return boxedFloat;
+    }
+
+    public Short getBoxedShort() {
+        return boxedShort;
+    }
+
+    public Byte getBoxedByte() {
+        return boxedByte;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
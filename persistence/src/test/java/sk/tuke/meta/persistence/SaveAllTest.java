@@ -0,0 +1,178 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveAllTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private static List<Player> players(int count) {
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            players.add(new Player("P" + i, i, null));
+        }
+        return players;
+    }
+
+    private void rejectPlayer(String name) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TRIGGER reject BEFORE INSERT ON 'Player' WHEN NEW.name = '" + name + "' "
+                    + "BEGIN SELECT RAISE(ABORT, 'Rejected'); END");
+        }
+    }
+
+    private String name(long id) throws SQLException {
+        return TestDatabase.queryString(connection, "SELECT name FROM 'Player' WHERE id = " + id);
+    }
+
+    @Test
+    void insertedEntitiesGetIdsOfTheirRows() throws SQLException {
+        List<Player> players = players(10);
+        manager.saveAll(players);
+
+        Set<Long> ids = new HashSet<>();
+        for (Player player : players) {
+            assertTrue(player.getId() > 0);
+            assertTrue(ids.add(player.getId()));
+            assertEquals(player.getName(), name(player.getId()));
+        }
+    }
+
+    @Test
+    void idsFollowRowsWhenTheyAreNotConsecutive() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // Every insert is followed by a filler row, so the ids of a batch have gaps
+            statement.execute("DROP TABLE 'Player'");
+            statement.execute("CREATE TABLE 'Player' ('id' INTEGER PRIMARY KEY, 'name' TEXT, 'score' INTEGER, 'team' INTEGER)");
+            statement.execute("CREATE TRIGGER spread AFTER INSERT ON 'Player' BEGIN "
+                    + "INSERT INTO 'Player' (id, name) VALUES (NEW.id + 1, 'Filler'); END");
+        }
+
+        List<Player> players = List.of(new Player("A", 1, null), new Player("B", 2, null), new Player("C", 3, null));
+        manager.saveAll(players);
+
+        for (Player player : players) {
+            assertEquals(player.getName(), name(player.getId()));
+        }
+    }
+
+    @Test
+    void unsavedReferencesAreInsertedFirst() throws SQLException {
+        Team team = new Team("Red");
+        List<Player> players = List.of(new Player("A", 1, team), new Player("B", 2, team));
+        manager.saveAll(players);
+
+        assertTrue(team.getId() > 0);
+        for (Player player : players) {
+            assertEquals(team.getId(), TestDatabase.queryLong(connection, "SELECT team FROM 'Player' WHERE id = " + player.getId()));
+        }
+        assertEquals(1, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Team'"));
+    }
+
+    @Test
+    void savedEntitiesAreUpdatedWithNewOnes() throws SQLException {
+        Player saved = new Player("Old", 1, null);
+        manager.save(saved);
+        saved.setName("Updated");
+        Player inserted = new Player("New", 2, null);
+
+        manager.saveAll(List.of(saved, inserted));
+
+        assertEquals("Updated", name(saved.getId()));
+        assertEquals("New", name(inserted.getId()));
+        assertEquals(2, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+    }
+
+    @Test
+    void rowsAreInsertedByStatementsOfPowerOfTwoRows() throws SQLException {
+        List<String> inserts = Collections.synchronizedList(new ArrayList<>());
+        manager.setListener(new PersistenceListener() {
+            @Override
+            public void statementCompleted(String sql, long nanos) {
+                if (sql.startsWith("INSERT")) {
+                    inserts.add(sql);
+                }
+            }
+        });
+
+        List<Player> players = players(13);
+        manager.saveAll(players);
+
+        assertEquals(3, inserts.size());
+        assertEquals(13, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+        for (Player player : players) {
+            assertEquals(player.getName(), name(player.getId()));
+        }
+    }
+
+    @Test
+    void manyRowsAreSplitIntoChunks() throws SQLException {
+        List<Player> players = players(1000);
+        manager.saveAll(players);
+
+        assertEquals(1000, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+        for (Player player : players) {
+            assertEquals(player.getName(), name(player.getId()));
+        }
+    }
+
+    @Test
+    void failedRowUnsavesRowsInsertedBeforeIt() throws SQLException {
+        // 13 rows are inserted by 8, 4 and 1 rows, the second statement fails
+        List<Player> players = players(13);
+        rejectPlayer("P10");
+
+        assertThrows(PersistenceException.class, () -> manager.saveAll(players));
+        assertEquals(0, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+        for (Player player : players) {
+            assertEquals(0, player.getId());
+        }
+
+        players.get(10).setName("Accepted");
+        manager.saveAll(players);
+        assertEquals(13, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+        for (Player player : players) {
+            assertEquals(player.getName(), name(player.getId()));
+        }
+    }
+
+    @Test
+    void rollbackOfEnclosingTransactionUnsavesInsertedRows() throws SQLException {
+        List<Player> players = players(5);
+        manager.startTransaction();
+        manager.saveAll(players);
+        manager.rollbackTransaction();
+
+        for (Player player : players) {
+            assertEquals(0, player.getId());
+        }
+        manager.saveAll(players);
+        assertEquals(5, TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM 'Player'"));
+    }
+}
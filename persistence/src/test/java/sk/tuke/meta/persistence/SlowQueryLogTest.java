@@ -0,0 +1,96 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryLogTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private final List<SlowQuery> reported = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+        manager.saveAll(List.of(new Player("A", 1, null), new Player("B", 2, null)));
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private SlowQuery lastSelect() {
+        for (int i = reported.size() - 1; i >= 0; i--) {
+            if (reported.get(i).getSql().startsWith("SELECT")) {
+                return reported.get(i);
+            }
+        }
+        return fail("No select was reported.");
+    }
+
+    @Test
+    void slowQueryHasParametersAndPlan() {
+        manager.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, reported::add));
+        manager.getBy(Player.class, "name", "A");
+
+        SlowQuery query = lastSelect();
+        assertEquals(List.of("A"), query.getParameters());
+        assertFalse(query.getPlan().isEmpty());
+        assertTrue(query.isFullTableScan(), query.toString());
+        assertTrue(query.toString().contains("full table scan"));
+    }
+
+    @Test
+    void searchByIndexIsNotFullTableScan() throws Exception {
+        manager.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, reported::add));
+        manager.get(Team.class, 1);
+
+        assertFalse(lastSelect().isFullTableScan(), lastSelect().toString());
+    }
+
+    @Test
+    void planIsCapturedOncePerStatement() {
+        SlowQueryLog log = new SlowQueryLog(0, TimeUnit.MILLISECONDS, reported::add);
+        manager.setSlowQueryLog(log);
+        manager.getBy(Player.class, "name", "A");
+        SlowQuery first = lastSelect();
+        manager.getBy(Player.class, "name", "B");
+        SlowQuery second = lastSelect();
+
+        assertEquals(first.getSql(), second.getSql());
+        assertEquals(List.of("B"), second.getParameters());
+        assertSame(first.getPlan(), second.getPlan());
+        assertSame(first.getPlan(), log.getPlans().get(first.getSql()));
+        assertEquals(reported.size(), log.getCount());
+    }
+
+    @Test
+    void fastQueriesAreNotReported() {
+        SlowQueryLog log = new SlowQueryLog(1, TimeUnit.HOURS, reported::add);
+        manager.setSlowQueryLog(log);
+        manager.getAll(Player.class);
+
+        assertTrue(reported.isEmpty());
+        assertEquals(0, log.getCount());
+    }
+
+    @Test
+    void failingHandlerDoesNotFailQuery() {
+        manager.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, query -> {
+            throw new IllegalStateException("Handler failed");
+        }));
+
+        assertEquals(2, manager.getAll(Player.class).size());
+    }
+}
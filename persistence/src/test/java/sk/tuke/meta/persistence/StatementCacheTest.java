@@ -0,0 +1,139 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+    private Connection connection;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void releasedStatementIsReused() throws SQLException {
+        try (StatementCache cache = new StatementCache(connection)) {
+            PreparedStatement first;
+            try (CachedStatement cached = cache.prepare("SELECT ?")) {
+                first = cached.get();
+                first.setInt(1, 5);
+            }
+            try (CachedStatement cached = cache.prepare("SELECT ?")) {
+                assertSame(first, cached.get());
+            }
+
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.size());
+            assertFalse(first.isClosed());
+        }
+    }
+
+    @Test
+    void parametersAreClearedOnRelease() throws SQLException {
+        try (StatementCache cache = new StatementCache(connection)) {
+            try (CachedStatement cached = cache.prepare("SELECT ?")) {
+                cached.get().setInt(1, 5);
+            }
+            try (CachedStatement cached = cache.prepare("SELECT ?");
+                 ResultSet resultSet = cached.get().executeQuery()) {
+                resultSet.getInt(1);
+                assertTrue(resultSet.wasNull());
+            }
+        }
+    }
+
+    @Test
+    void statementInUseIsNotHandedOutTwice() throws SQLException {
+        try (StatementCache cache = new StatementCache(connection)) {
+            try (CachedStatement outer = cache.prepare("SELECT 1")) {
+                PreparedStatement temporary;
+                try (CachedStatement inner = cache.prepare("SELECT 1")) {
+                    temporary = inner.get();
+                    assertNotSame(outer.get(), temporary);
+                }
+                assertTrue(temporary.isClosed());
+                assertFalse(outer.get().isClosed());
+            }
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        try (StatementCache cache = new StatementCache(connection, 2)) {
+            PreparedStatement first;
+            try (CachedStatement cached = cache.prepare("SELECT 1")) {
+                first = cached.get();
+            }
+            try (CachedStatement cached = cache.prepare("SELECT 2")) {
+                cached.get();
+            }
+            try (CachedStatement cached = cache.prepare("SELECT 3")) {
+                cached.get();
+            }
+
+            assertEquals(2, cache.size());
+            assertEquals(1, cache.getEvictions());
+            assertTrue(first.isClosed());
+        }
+    }
+
+    @Test
+    void evictedStatementInUseIsClosedOnRelease() throws SQLException {
+        try (StatementCache cache = new StatementCache(connection, 1)) {
+            try (CachedStatement used = cache.prepare("SELECT 1")) {
+                try (CachedStatement other = cache.prepare("SELECT 2")) {
+                    other.get();
+                }
+                assertFalse(used.get().isClosed());
+                used.close();
+                assertTrue(used.get().isClosed());
+            }
+        }
+    }
+
+    @Test
+    void closedCacheClosesStatements() throws SQLException {
+        StatementCache cache = new StatementCache(connection);
+        PreparedStatement statement;
+        try (CachedStatement cached = cache.prepare("SELECT 1")) {
+            statement = cached.get();
+        }
+        cache.close();
+
+        assertTrue(statement.isClosed());
+        assertThrows(SQLException.class, () -> cache.prepare("SELECT 1"));
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementCache(connection, 0));
+    }
+
+    @Test
+    void managerReusesStatements() {
+        SingleConnectionProvider provider = new SingleConnectionProvider(connection);
+        ReflectivePersistenceManager manager = new ReflectivePersistenceManager(provider);
+        for (int i = 0; i < 5; i++) {
+            manager.getAll(Sample.class);
+        }
+
+        assertEquals(1, provider.getStatementCache().getMisses());
+        assertEquals(4, provider.getStatementCache().getHits());
+    }
+}
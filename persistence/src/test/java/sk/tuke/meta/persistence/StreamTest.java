@@ -0,0 +1,106 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        try (ReflectivePersistenceManager writer = new ReflectivePersistenceManager(connection)) {
+            List<Team> teams = new ArrayList<>();
+            List<Object> entities = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                teams.add(new Team("T" + i));
+            }
+            // Each chunk of 100 players references its own 10 teams
+            for (int i = 0; i < 300; i++) {
+                entities.add(new Player("P" + i, i, teams.get(i / 10)));
+                entities.add(new Trophy("C" + i, teams.get(i / 10)));
+            }
+            writer.saveAll(entities);
+        }
+
+        manager = new ReflectivePersistenceManager(connection);
+        manager.setFetchSize(100);
+        manager.setListener(new PersistenceListener() {
+            @Override
+            public void statementCompleted(String sql, long nanos) {
+                statements.add(sql);
+            }
+        });
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long teamQueries() {
+        return statements.stream().filter(sql -> sql.startsWith("SELECT * FROM 'Team'")).count();
+    }
+
+    @Test
+    void eagerReferencesAreLoadedOncePerChunk() {
+        List<Player> players;
+        try (Stream<Player> stream = manager.streamAll(Player.class)) {
+            players = stream.toList();
+        }
+
+        assertEquals(300, players.size());
+        for (Player player : players) {
+            assertEquals("T" + player.getScore() / 10, player.getTeam().getName());
+        }
+        assertEquals(3, teamQueries());
+    }
+
+    @Test
+    void eagerReferencesOfImmutableEntitiesAreLoadedOncePerChunk() {
+        List<Trophy> trophies;
+        try (Stream<Trophy> stream = manager.streamAll(Trophy.class)) {
+            trophies = stream.toList();
+        }
+
+        assertEquals(300, trophies.size());
+        for (Trophy trophy : trophies) {
+            assertEquals("T" + Integer.parseInt(trophy.name().substring(1)) / 10, trophy.team().getName());
+        }
+        assertEquals(3, teamQueries());
+    }
+
+    @Test
+    void onlyChunksReadByTheStreamAreCompleted() {
+        List<Player> players;
+        try (Stream<Player> stream = manager.streamAll(Player.class)) {
+            players = stream.limit(5).toList();
+        }
+
+        assertEquals(5, players.size());
+        assertEquals(1, teamQueries());
+    }
+
+    @Test
+    void rowsAreCompletedInChunksOfTheDefaultSize() {
+        manager.setFetchSize(0);
+        try (Stream<Player> stream = manager.streamBy(Player.class, "name", "P7")) {
+            Player player = stream.findFirst().orElseThrow();
+            assertEquals("T0", player.getTeam().getName());
+        }
+        assertEquals(1, teamQueries());
+    }
+}
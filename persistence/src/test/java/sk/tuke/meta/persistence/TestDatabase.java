@@ -0,0 +1,70 @@
+package sk.tuke.meta.persistence;
+
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SQLite databases with the tables of the test entities.
+ */
+final class TestDatabase {
+    private TestDatabase() {
+    }
+
+    static Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        createTables(connection);
+        return connection;
+    }
+
+    /**
+     * @return data source of a database file, e.g. for a {@link ConnectionPool}
+     */
+    static SQLiteDataSource file(Path directory) throws SQLException {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + directory.resolve("test.db"));
+        try (Connection connection = dataSource.getConnection()) {
+            createTables(connection);
+        }
+        return dataSource;
+    }
+
+    private static void createTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE 'Sample' ('id' INTEGER PRIMARY KEY AUTOINCREMENT, 'intValue' INTEGER, "
+                    + "'longValue' INTEGER, 'doubleValue' REAL, 'booleanValue' INTEGER, 'floatValue' REAL, "
+                    + "'shortValue' INTEGER, 'byteValue' INTEGER, 'boxedInt' INTEGER, 'boxedLong' INTEGER, "
+                    + "'boxedDouble' REAL, 'boxedBoolean' INTEGER, 'boxedFloat' REAL, 'boxedShort' INTEGER, "
+                    + "'boxedByte' INTEGER, 'text' TEXT)");
+            statement.execute("CREATE TABLE 'Team' ('id' INTEGER PRIMARY KEY AUTOINCREMENT, 'name' TEXT)");
+            statement.execute("CREATE TABLE 'Player' ('id' INTEGER PRIMARY KEY AUTOINCREMENT, 'name' TEXT, "
+                    + "'score' INTEGER, 'team' INTEGER, FOREIGN KEY ('team') REFERENCES 'Team'('id'))");
+            statement.execute("CREATE TABLE 'Trophy' ('id' INTEGER PRIMARY KEY AUTOINCREMENT, 'name' TEXT, "
+                    + "'team' INTEGER, FOREIGN KEY ('team') REFERENCES 'Team'('id'))");
+        }
+    }
+
+    /**
+     * @return number of rows changed on the connection since it was opened
+     */
+    static long totalChanges(Connection connection) throws SQLException {
+        return queryLong(connection, "SELECT total_changes()");
+    }
+
+    static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.getLong(1);
+        }
+    }
+
+    static String queryString(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.getString(1);
+        }
+    }
+}
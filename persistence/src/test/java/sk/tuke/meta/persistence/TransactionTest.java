@@ -0,0 +1,126 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        manager.close();
+        connection.close();
+    }
+
+    private long count(String table) throws SQLException {
+        return TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM '" + table + "'");
+    }
+
+    @Test
+    void savepointRollbackKeepsOuterChanges() throws SQLException {
+        manager.startTransaction(Propagation.REQUIRED);
+        long kept = manager.save(new Team("Kept"));
+
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(new Team("Rolled back"));
+        manager.rollbackTransaction();
+
+        manager.commitTransaction();
+        assertEquals(1, count("Team"));
+        assertEquals("Kept", manager.get(Team.class, kept).orElseThrow().getName());
+    }
+
+    @Test
+    void savepointRollbackUndoesUpdates() throws SQLException {
+        Team team = new Team("Before");
+        long id = manager.save(team);
+
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        team.setName("After");
+        manager.save(team);
+        manager.rollbackTransaction();
+        manager.commitTransaction();
+
+        assertEquals("Before", TestDatabase.queryString(connection, "SELECT name FROM 'Team' WHERE id = " + id));
+    }
+
+    @Test
+    void joinedRollbackRollsBackWholeTransaction() throws SQLException {
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.save(new Team("Outer"));
+
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.save(new Team("Inner"));
+        manager.rollbackTransaction();
+
+        assertThrows(PersistenceException.class, manager::commitTransaction);
+        assertEquals(0, count("Team"));
+    }
+
+    @Test
+    void savepointRollbackUnsavesInsertedEntities() throws SQLException {
+        Team team = new Team("Rolled back");
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(team);
+        manager.rollbackTransaction();
+        assertEquals(0, team.getId());
+
+        manager.save(team);
+        manager.commitTransaction();
+        assertEquals(1, count("Team"));
+        assertEquals("Rolled back", TestDatabase.queryString(connection, "SELECT name FROM 'Team' WHERE id = " + team.getId()));
+    }
+
+    @Test
+    void rollbackUnsavesEntitiesOfCommittedSavepoints() throws SQLException {
+        Team team = new Team("Inner");
+        Player player = new Player("Player", 1, null);
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(team);
+        manager.saveAll(List.of(player));
+        manager.commitTransaction();
+        manager.rollbackTransaction();
+
+        assertEquals(0, team.getId());
+        assertEquals(0, player.getId());
+        manager.save(team);
+        manager.save(player);
+        assertEquals(1, count("Team"));
+        assertEquals(1, count("Player"));
+    }
+
+    @Test
+    void savepointRollbackForgetsInsertedImmutableEntities() throws SQLException {
+        Team team = new Team("Team");
+        manager.save(team);
+        Trophy trophy = new Trophy("Cup", team);
+
+        manager.startTransaction(Propagation.REQUIRED);
+        manager.startTransaction(Propagation.NESTED);
+        manager.save(trophy);
+        manager.rollbackTransaction();
+
+        manager.save(trophy);
+        manager.commitTransaction();
+        assertEquals(1, count("Trophy"));
+        assertThrows(PersistenceException.class, () -> manager.save(trophy));
+    }
+}
@@ -0,0 +1,12 @@
+package sk.tuke.meta.persistence;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+@Entity
+public record Trophy(@Id long id, String name, @ManyToOne Team team) {
+    public Trophy(String name, Team team) {
+        this(0, name, team);
+    }
+}
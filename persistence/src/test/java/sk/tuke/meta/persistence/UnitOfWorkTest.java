@@ -0,0 +1,104 @@
+package sk.tuke.meta.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.PersistenceException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitOfWorkTest {
+    private Connection connection;
+    private ReflectivePersistenceManager manager;
+    private UnitOfWork unitOfWork;
+
+    @BeforeEach
+    void open() throws SQLException {
+        connection = TestDatabase.open();
+        manager = new ReflectivePersistenceManager(connection);
+        unitOfWork = new UnitOfWork(manager);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        unitOfWork.close();
+        manager.close();
+        connection.close();
+    }
+
+    private long count(String table) throws SQLException {
+        return TestDatabase.queryLong(connection, "SELECT COUNT(*) FROM '" + table + "'");
+    }
+
+    @Test
+    void operationsAreWrittenOnCommit() throws SQLException {
+        Team team = new Team("Red");
+        Player player = new Player("Ann", 10, team);
+        unitOfWork.save(player);
+        unitOfWork.save(team);
+        assertEquals(2, unitOfWork.size());
+        assertEquals(0, count("Player"));
+
+        unitOfWork.commit();
+        assertEquals(0, unitOfWork.size());
+        assertTrue(team.getId() > 0);
+        assertEquals(team.getId(), TestDatabase.queryLong(connection, "SELECT team FROM 'Player' WHERE id = " + player.getId()));
+    }
+
+    @Test
+    void lastOperationOfEntityWins() throws SQLException {
+        Team deleted = new Team("Deleted");
+        manager.save(deleted);
+        Team neverInserted = new Team("Never inserted");
+        Team saved = new Team("Saved");
+
+        unitOfWork.save(deleted);
+        unitOfWork.delete(deleted);
+        unitOfWork.save(neverInserted);
+        unitOfWork.delete(neverInserted);
+        unitOfWork.delete(saved);
+        unitOfWork.save(saved);
+        unitOfWork.commit();
+
+        assertEquals(1, count("Team"));
+        assertEquals(0, neverInserted.getId());
+        assertEquals("Saved", TestDatabase.queryString(connection, "SELECT name FROM 'Team'"));
+    }
+
+    @Test
+    void failedCommitKeepsOperationsForRetry() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TRIGGER reject BEFORE INSERT ON 'Player' BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+        }
+        Team team = new Team("Red");
+        unitOfWork.save(team);
+        unitOfWork.save(new Player("Ann", 10, team));
+
+        assertThrows(PersistenceException.class, unitOfWork::commit);
+        assertEquals(0, team.getId());
+        assertEquals(0, count("Team"));
+        assertEquals(2, unitOfWork.size());
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TRIGGER reject");
+        }
+        unitOfWork.commit();
+        assertEquals(1, count("Team"));
+        assertEquals(1, count("Player"));
+    }
+
+    @Test
+    void commitJoinsRunningTransaction() throws SQLException {
+        manager.startTransaction(Propagation.REQUIRED);
+        unitOfWork.save(new Team("Red"));
+        unitOfWork.commit();
+        assertEquals(1, count("Team"));
+
+        manager.rollbackTransaction();
+        assertEquals(0, count("Team"));
+    }
+}
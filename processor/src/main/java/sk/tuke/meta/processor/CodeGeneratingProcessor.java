@@ -5,6 +5,8 @@ import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+import sk.tuke.meta.persistence.Index;
+import sk.tuke.meta.processor.exceptions.IndexDeclarationException;
 import sk.tuke.meta.processor.exceptions.MissingAnnotationException;
 import sk.tuke.meta.processor.exceptions.PrimaryKeyException;
 
@@ -13,8 +15,15 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.persistence.*;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
@@ -24,8 +33,14 @@ import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @SupportedAnnotationTypes("javax.persistence.Entity")
 public class CodeGeneratingProcessor extends AbstractProcessor {
@@ -51,6 +66,8 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
 
         generateSqlFiles(elements);
         generateDAOs(elements);
+        generateLazyRefs(elements);
+        generateQueries(elements);
         generatePersistenceManager(elements);
 
         return true;
@@ -65,6 +82,29 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
             }
         }
     }
+    private void generateLazyRefs(Set<? extends Element> elements) {
+        for(Element element: elements) {
+            if (isImmutable((TypeElement) element)) {
+                continue;
+            }
+            try {
+                generateLazyRef((TypeElement) element);
+            } catch (IOException e){
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            }
+        }
+    }
+
+    private void generateQueries(Set<? extends Element> elements) {
+        for(Element element: elements) {
+            try {
+                generateQuery((TypeElement) element);
+            } catch (IOException e){
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            }
+        }
+    }
+
     private void generateSqlFiles(Set<? extends Element> elements) {
         for (Element element : elements) {
             try {
@@ -114,7 +154,11 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
         try(Writer writer = fileObject.openWriter()){
             Template template = velocity.getTemplate(TEMPLATE_PATH + "DAO.java.vm");
 
-            List<String> columnsNames = TableManager.getNonIdFields(entity).stream()
+            // Columns are bound as all plain columns first, followed by the references
+            List<String> columnsNames = Stream.concat(
+                            TableManager.getNonManyToOneFields(entity).stream()
+                                    .filter(field -> field.getAnnotation(Id.class) == null),
+                            TableManager.getManyToOneVariables(entity).stream())
                     .map(field -> {
                         try {
                             return TableManager.getColumnName(field);
@@ -133,6 +177,32 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
                     .map(field -> capitalize(TableManager.getFieldName(field)))
                     .toList();
 
+            List<String> nonReferenceGetters = TableManager.getNonManyToOneFields(entity).stream()
+                    .filter(field -> field.getAnnotation(Id.class) == null)
+                    .map(field -> getterName(entity, field))
+                    .toList();
+
+            List<String> referenceGetters = TableManager.getManyToOneVariables(entity).stream()
+                    .map(field -> getterName(entity, field))
+                    .toList();
+
+            // Immutable entities are created by a constructor taking the hydrated locals in field declaration order
+            List<String> constructorArguments = TableManager.getVariables(entity).stream()
+                    .filter(field -> !field.getModifiers().contains(Modifier.STATIC))
+                    .map(field -> {
+                        try {
+                            String local = TableManager.getColumnName(field).toLowerCase();
+                            ManyToOne manyToOne = field.getAnnotation(ManyToOne.class);
+                            if (manyToOne == null) {
+                                return local;
+                            }
+                            return local + (manyToOne.fetch() == FetchType.LAZY ? "Proxy" : "Reference");
+                        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                            throw new PersistenceException(e);
+                        }
+                    })
+                    .toList();
+
             List<String> nonReferenceFieldsWithId = TableManager.getNonManyToOneFields(entity).stream()
                     .map(field -> capitalize(TableManager.getFieldName(field)))
                     .map(name -> capitalize(name))
@@ -150,6 +220,19 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
                     .map(field -> field.asType().toString())
                     .toList();
 
+            List<String> nonReferenceFieldAccessors = TableManager.getNonManyToOneFields(entity).stream()
+                    .filter(field -> field.getAnnotation(Id.class) == null)
+                    .map(field -> jdbcAccessor(field.asType()))
+                    .toList();
+
+            List<String> nonReferenceFieldAccessorsWithId = TableManager.getNonManyToOneFields(entity).stream()
+                    .map(field -> jdbcAccessor(field.asType()))
+                    .toList();
+
+            List<String> nonReferenceFieldBoxedAccessorsWithId = TableManager.getNonManyToOneFields(entity).stream()
+                    .map(field -> boxedJdbcAccessor(field.asType()))
+                    .toList();
+
             List<String> referenceFieldIds = TableManager.getManyToOneVariables(entity).stream()
                     .map(elem -> TableManager.getIdField(elem).getSimpleName().toString())
                     .map(name -> capitalize(name))
@@ -217,6 +300,11 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
             context.put("tableName", TableManager.getTableName(entity));
             context.put("idColumnName", TableManager.getColumnName(TableManager.getIdField(entity)));
             context.put("idFieldName", capitalize(TableManager.getFieldName(TableManager.getIdField(entity))));
+            context.put("idGetter", getterName(entity, TableManager.getIdField(entity)));
+            context.put("immutable", isImmutable(entity));
+            context.put("constructorArguments", constructorArguments);
+            context.put("nonReferenceGetters", nonReferenceGetters);
+            context.put("referenceGetters", referenceGetters);
             context.put("columnsNames", columnsNames);
             context.put("fieldNames", fieldNames);
             context.put("nonReferenceFields", nonReferenceFields);
@@ -226,13 +314,72 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
             context.put("nonReferenceColumns", nonReferenceColumns);
             context.put("nonReferenceFieldsWithId", nonReferenceFieldsWithId);
             context.put("nonReferenceFieldTypes", nonReferenceFieldTypes);
+            context.put("nonReferenceFieldAccessors", nonReferenceFieldAccessors);
+            context.put("nonReferenceFieldAccessorsWithId", nonReferenceFieldAccessorsWithId);
+            context.put("nonReferenceFieldBoxedAccessorsWithId", nonReferenceFieldBoxedAccessorsWithId);
             context.put("referenceColumnWithDefaultFetching", referenceColumnWithDefaultFetching);
             context.put("referenceFieldsWithDefaultFetchingTypes", referenceFieldsWithDefaultFetchingTypes);
             context.put("referenceFieldsWithDefaultFetching", referenceFieldsWithDefaultFetching);
             context.put("referenceColumnWithLazyFetching", referenceColumnWithLazyFetching);
             context.put("referenceFieldsWithLazyFetchingTypes", referenceFieldsWithLazyFetchingTypes);
             context.put("referenceFieldsWithLazyFetching", referenceFieldsWithLazyFetching);
+            context.put("hydratedColumns", Stream.of(nonReferenceColumns, referenceColumnWithDefaultFetching,
+                    referenceColumnWithLazyFetching).flatMap(List::stream).toList());
+
+
+            template.merge(context, writer);
+        } catch (InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    private void generateLazyRef(TypeElement entity) throws IOException {
+        JavaFileObject fileObject = processingEnv.getFiler().createSourceFile(entity.toString() + "LazyRef");
+
+        try(Writer writer = fileObject.openWriter()){
+            Template template = velocity.getTemplate(TEMPLATE_PATH + "LazyRef.java.vm");
+
+            String idGetter = "get" + capitalize(TableManager.getFieldName(TableManager.getIdField(entity)));
+
+            VelocityContext context = new VelocityContext();
+            context.put("package", entity.getEnclosingElement().toString());
+            context.put("entity", entity.getSimpleName().toString());
+            context.put("methods", getOverridableMethods(entity, idGetter));
+
+            template.merge(context, writer);
+        }
+    }
+
+    private void generateQuery(TypeElement entity) throws IOException {
+        JavaFileObject fileObject = processingEnv.getFiler().createSourceFile(entity.toString() + "Query");
+
+        try(Writer writer = fileObject.openWriter()){
+            Template template = velocity.getTemplate(TEMPLATE_PATH + "Query.java.vm");
+
+            List<Map<String, String>> fields = new ArrayList<>();
+            for (VariableElement field : Stream.concat(TableManager.getNonManyToOneFields(entity).stream(),
+                    TableManager.getManyToOneVariables(entity).stream()).toList()) {
+                TypeMirror type = field.asType();
+                String valueType;
+                if (field.getAnnotation(ManyToOne.class) != null) {
+                    valueType = Long.class.getName();
+                } else if (type.getKind().isPrimitive()) {
+                    valueType = processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+                } else {
+                    valueType = type.toString();
+                }
 
+                Map<String, String> description = new HashMap<>();
+                description.put("constant", constantName(TableManager.getFieldName(field)));
+                description.put("column", TableManager.getColumnName(field));
+                description.put("type", valueType);
+                fields.add(description);
+            }
+
+            VelocityContext context = new VelocityContext();
+            context.put("package", entity.getEnclosingElement().toString());
+            context.put("entity", entity.getSimpleName().toString());
+            context.put("fields", fields);
 
             template.merge(context, writer);
         } catch (InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
@@ -240,6 +387,123 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
         }
     }
 
+    /**
+     * @return whether the entity is a record or has no no-arg constructor, so it is created by a single call
+     * of the constructor taking all its fields, has no lazy reference class and its id is not assigned on insert
+     */
+    private static boolean isImmutable(TypeElement entity) {
+        return entity.getKind() == ElementKind.RECORD || ElementFilter.constructorsIn(entity.getEnclosedElements())
+                .stream()
+                .noneMatch(constructor -> constructor.getParameters().isEmpty());
+    }
+
+    /**
+     * @return name of the accessor of a field, <code>name</code> for record components, <code>isName</code>
+     * for primitive booleans and <code>getName</code> otherwise
+     */
+    private String getterName(TypeElement entity, VariableElement field) {
+        String name = TableManager.getFieldName(field);
+        if (entity.getKind() == ElementKind.RECORD) {
+            return name;
+        }
+        return (field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalize(name);
+    }
+
+    /**
+     * @return suffix of the <code>ResultSet</code> getter and <code>PreparedStatement</code> setter
+     * of a primitive or <code>String</code> field, e.g. <code>Int</code>, <code>Object</code> for other types
+     */
+    private static String jdbcAccessor(TypeMirror type) {
+        return switch (type.toString()) {
+            case "long" -> "Long";
+            case "int" -> "Int";
+            case "short" -> "Short";
+            case "byte" -> "Byte";
+            case "double" -> "Double";
+            case "float" -> "Float";
+            case "boolean" -> "Boolean";
+            case "java.lang.String" -> "String";
+            default -> "Object";
+        };
+    }
+
+    /**
+     * @return suffix of the <code>ResultSet</code> getter of the primitive type of a boxed field, e.g. <code>Int</code>
+     * for <code>Integer</code>, an empty string for other types. <code>null</code> is detected by <code>wasNull()</code>.
+     */
+    private static String boxedJdbcAccessor(TypeMirror type) {
+        return switch (type.toString()) {
+            case "java.lang.Long" -> "Long";
+            case "java.lang.Integer" -> "Int";
+            case "java.lang.Short" -> "Short";
+            case "java.lang.Byte" -> "Byte";
+            case "java.lang.Double" -> "Double";
+            case "java.lang.Float" -> "Float";
+            case "java.lang.Boolean" -> "Boolean";
+            default -> "";
+        };
+    }
+
+    /**
+     * Convert a camel case field name to an upper case constant name, e.g. <code>firstName</code> to <code>FIRST_NAME</code>.
+     */
+    private static String constantName(String fieldName) {
+        return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Describe every method of the entity a lazy reference has to override,
+     * i.e. non-static, non-final public and protected methods not declared by Object.
+     */
+    private List<Map<String, Object>> getOverridableMethods(TypeElement entity, String idGetter) {
+        List<Map<String, Object>> methods = new ArrayList<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entity))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)
+                    || modifiers.contains(Modifier.PRIVATE)
+                    || !(modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.PROTECTED))
+                    || method.getEnclosingElement().toString().equals(Object.class.getName())) {
+                continue;
+            }
+
+            List<String> parameters = new ArrayList<>();
+            List<String> arguments = new ArrayList<>();
+            for (VariableElement parameter : method.getParameters()) {
+                parameters.add(parameter.asType() + " " + parameter.getSimpleName());
+                arguments.add(parameter.getSimpleName().toString());
+            }
+
+            String typeParameters = method.getTypeParameters().isEmpty() ? "" : method.getTypeParameters().stream()
+                    .map(parameter -> parameter.getSimpleName() + parameter.getBounds().stream()
+                            .map(Object::toString)
+                            .filter(bound -> !bound.equals(Object.class.getName()))
+                            .map(bound -> " extends " + bound)
+                            .collect(Collectors.joining(" &")))
+                    .collect(Collectors.joining(", ", "<", "> "));
+
+            String thrown = method.getThrownTypes().isEmpty() ? "" : method.getThrownTypes().stream()
+                    .map(Object::toString)
+                    .collect(Collectors.joining(", ", " throws ", ""));
+
+            String name = method.getSimpleName().toString();
+
+            Map<String, Object> description = new HashMap<>();
+            description.put("modifiers", modifiers.contains(Modifier.PUBLIC) ? "public" : "protected");
+            description.put("typeParameters", typeParameters);
+            description.put("returnType", method.getReturnType().toString());
+            description.put("name", name);
+            description.put("parameters", String.join(", ", parameters));
+            description.put("throws", thrown);
+            description.put("superCall", (method.getReturnType().getKind() == TypeKind.VOID ? "" : "return ")
+                    + "super." + name + "(" + String.join(", ", arguments) + ");");
+            description.put("idGetter", name.equals(idGetter) && parameters.isEmpty());
+            methods.add(description);
+        }
+
+        return methods;
+    }
+
     private String generateSqlForTableCreation(TypeElement element) throws Exception {
         entityAnnotationCheck(element);
         idAnnotationCheck(element);
@@ -296,7 +560,75 @@ public class CodeGeneratingProcessor extends AbstractProcessor {
 
         String sql = String.format("CREATE TABLE IF NOT EXISTS '%s' (%s\n);\n\n",
                 TableManager.getTableName(element), String.join(", ", strings));
-        return sql;
+        return sql + generateSqlForIndexes(element);
+    }
+
+    /**
+     * Create indexes declared by <code>@Index</code> on the entity and its fields,
+     * and an index on every <code>@ManyToOne</code> column not leading any declared index.
+     */
+    private String generateSqlForIndexes(TypeElement element) throws Exception {
+        String tableName = TableManager.getTableName(element);
+
+        Map<String, String> columns = new HashMap<>();
+        for (VariableElement field : TableManager.getFields(element)) {
+            if (field.getAnnotation(Transient.class) == null) {
+                String column = TableManager.getColumnName(field);
+                columns.put(column.toLowerCase(Locale.ROOT), column);
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        Set<String> leadingColumns = new HashSet<>();
+
+        for (Index index : element.getAnnotationsByType(Index.class)) {
+            statements.add(createIndexSql(tableName, columns, index.name(), index.columnList(), index.unique(), leadingColumns));
+        }
+
+        for (VariableElement field : TableManager.getFields(element)) {
+            if (field.getAnnotation(Transient.class) != null) {
+                continue;
+            }
+            for (Index index : field.getAnnotationsByType(Index.class)) {
+                String columnList = index.columnList().isBlank() ? TableManager.getColumnName(field) : index.columnList();
+                statements.add(createIndexSql(tableName, columns, index.name(), columnList, index.unique(), leadingColumns));
+            }
+        }
+
+        for (VariableElement field : TableManager.getManyToOneVariables(element)) {
+            String column = TableManager.getColumnName(field);
+            if (!leadingColumns.contains(column.toLowerCase(Locale.ROOT))) {
+                statements.add(createIndexSql(tableName, columns, "", column, false, leadingColumns));
+            }
+        }
+
+        return String.join("", statements);
+    }
+
+    private String createIndexSql(String tableName, Map<String, String> columns, String name, String columnList,
+                                  boolean unique, Set<String> leadingColumns) throws IndexDeclarationException {
+        List<String> indexedColumns = new ArrayList<>();
+        List<String> nameParts = new ArrayList<>();
+        nameParts.add("idx");
+        nameParts.add(tableName);
+
+        for (String part : columnList.split(",")) {
+            String[] tokens = part.trim().split("\\s+");
+            String column = columns.get(tokens[0].toLowerCase(Locale.ROOT));
+            if (column == null || tokens.length > 2
+                    || (tokens.length == 2 && !tokens[1].equalsIgnoreCase("ASC") && !tokens[1].equalsIgnoreCase("DESC"))) {
+                throw new IndexDeclarationException("Index on table " + tableName + " has invalid column '" + part.trim() + "'.");
+            }
+            indexedColumns.add(String.format("'%s'", column) + (tokens.length == 2 ? " " + tokens[1].toUpperCase(Locale.ROOT) : ""));
+            nameParts.add(column);
+        }
+        leadingColumns.add(nameParts.get(2).toLowerCase(Locale.ROOT));
+
+        return String.format("CREATE %sINDEX IF NOT EXISTS '%s' ON '%s' (%s);\n\n",
+                unique ? "UNIQUE " : "",
+                name.isBlank() ? String.join("_", nameParts) : name,
+                tableName,
+                String.join(", ", indexedColumns));
     }
 
     private void entityAnnotationCheck(Element element) throws MissingAnnotationException {
@@ -9,8 +9,17 @@ import javax.persistence.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.Set;
 
 public class TableManager {
+    /**
+     * Field types stored as SQLite <code>INTEGER</code>, booleans as 0 and 1.
+     */
+    private static final Set<String> INTEGER_TYPES = Set.of("int", "long", "short", "byte", "boolean",
+            Integer.class.getName(), Long.class.getName(), Short.class.getName(), Byte.class.getName(),
+            Boolean.class.getName());
+    private static final Set<String> REAL_TYPES = Set.of("float", "double",
+            Float.class.getName(), Double.class.getName());
 
     static String getTableName(TypeElement element) throws NoSuchMethodException, InvocationTargetException,
             IllegalAccessException {
@@ -67,9 +76,9 @@ public class TableManager {
 
         if (type.equals(String.class.getName())) {
             return "TEXT";
-        } else if(type.equals(int.class.getName()) || type.equals(long.class.getName())){
+        } else if(INTEGER_TYPES.contains(type)){
             return "INTEGER";
-        } else if(type.equals(float.class.getName()) || type.equals(double.class.getName())){
+        } else if(REAL_TYPES.contains(type)){
             return "REAL";
         } else {
             throw new Exception("Unhandled type ( " + getColumnName(element) + ") of variable.");
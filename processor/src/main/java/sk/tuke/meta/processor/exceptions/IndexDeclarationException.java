@@ -0,0 +1,7 @@
+package sk.tuke.meta.processor.exceptions;
+
+public class IndexDeclarationException extends Exception{
+    public IndexDeclarationException(String message) {
+        super(message);
+    }
+}